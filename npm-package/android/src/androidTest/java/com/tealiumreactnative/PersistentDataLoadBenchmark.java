@@ -0,0 +1,145 @@
+package com.tealiumreactnative;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compares the cold load of the mapped store with SharedPreferences holding the same keys, on a
+ * device: ./gradlew connectedAndroidTest. Results are logged under the tag below.
+ *
+ * SharedPreferences are cached per process once loaded, so each run loads a fresh copy of the
+ * XML file under a new name. Both backends read through a warm page cache.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PersistentDataLoadBenchmark {
+
+    private static final String TAG = "PersistentDataBenchmark";
+    private static final int RUNS = 20;
+
+    private Context mContext;
+    private File mDirectory;
+
+    @Before
+    public void setUp() {
+        mContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        mDirectory = new File(mContext.getCacheDir(), "persistent-data-benchmark");
+        mDirectory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void coldLoad() throws Exception {
+        for (int keyCount : new int[]{100, 1000, 5000}) {
+            final Map<String, Object> values = values(keyCount);
+            Log.i(TAG, keyCount + " keys: mappedFile " + mappedLoadMillis(keyCount, values)
+                    + " ms, sharedPreferences " + sharedPreferencesLoadMillis(keyCount, values) + " ms");
+        }
+    }
+
+    private double mappedLoadMillis(int keyCount, Map<String, Object> values) throws IOException {
+        final File file = new File(mDirectory, keyCount + ".log");
+        final MappedPersistentStore store = MappedPersistentStore.open(file);
+        store.putAll(values);
+        store.close();
+
+        long total = 0;
+        for (int i = 0; i < RUNS; i++) {
+            final long start = SystemClock.elapsedRealtimeNanos();
+            final MappedPersistentStore loaded = MappedPersistentStore.open(file);
+            total += SystemClock.elapsedRealtimeNanos() - start;
+            loaded.close();
+        }
+        return total / 1e6 / RUNS;
+    }
+
+    private double sharedPreferencesLoadMillis(int keyCount, Map<String, Object> values) throws IOException {
+        final String name = "benchmark_" + keyCount;
+        final SharedPreferences.Editor editor = mContext.getSharedPreferences(name, Context.MODE_PRIVATE).edit();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            final Object value = entry.getValue();
+            if (value instanceof Boolean) {
+                editor.putBoolean(entry.getKey(), (Boolean) value);
+            } else if (value instanceof Long) {
+                editor.putLong(entry.getKey(), (Long) value);
+            } else {
+                editor.putString(entry.getKey(), (String) value);
+            }
+        }
+        editor.commit();
+
+        final File sharedPrefsDirectory = new File(mContext.getApplicationInfo().dataDir, "shared_prefs");
+        final File source = new File(sharedPrefsDirectory, name + ".xml");
+        long total = 0;
+        for (int i = 0; i < RUNS; i++) {
+            final String copyName = name + "_" + System.nanoTime();
+            final File copy = new File(sharedPrefsDirectory, copyName + ".xml");
+            copy(source, copy);
+
+            final long start = SystemClock.elapsedRealtimeNanos();
+            // getAll blocks until the background load has finished
+            mContext.getSharedPreferences(copyName, Context.MODE_PRIVATE).getAll();
+            total += SystemClock.elapsedRealtimeNanos() - start;
+            copy.delete();
+        }
+        mContext.getSharedPreferences(name, Context.MODE_PRIVATE).edit().clear().commit();
+        source.delete();
+        return total / 1e6 / RUNS;
+    }
+
+    private static Map<String, Object> values(int count) {
+        final Map<String, Object> values = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            switch (i % 3) {
+                case 0:
+                    values.put("flag_" + i, i % 2 == 0);
+                    break;
+                case 1:
+                    values.put("audience_" + i, "segment-" + i);
+                    break;
+                default:
+                    values.put("count_" + i, (long) i);
+                    break;
+            }
+        }
+        return values;
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = new FileInputStream(from); OutputStream out = new FileOutputStream(to)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.tealiumreactnative;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Start-up timings of the app, added to autotracked launch and wake events.
+ *
+ * A launch is a cold start when the module is created for the first time in the process, and is
+ * measured from process start. Later launches in the same process, when the React instance is
+ * recreated, are warm and measured from module creation. A wake is a hot start, timed on its own
+ * from the resume; it never carries the launch timings. All timestamps are elapsedRealtime, which
+ * is monotonic.
+ */
+final class AppStartMetrics {
+
+    static final String START_TYPE = "app_start_type";
+    static final String START_TIME = "app_start_time_ms";
+    static final String TIME_TO_MODULE = "app_start_to_module_ms";
+    static final String TIME_TO_INITIALIZE = "app_start_to_initialize_ms";
+    static final String TIME_TO_FIRST_TRACK = "app_start_to_first_track_ms";
+
+    // elapsedRealtime when this class was loaded; the process start on API levels that don't report it
+    private static final long CLASS_LOADED_AT = SystemClock.elapsedRealtime();
+    private static final AtomicBoolean sColdStartTaken = new AtomicBoolean();
+    private static volatile AppStartMetrics sCurrent;
+
+    private final boolean mCold;
+    private final long mStartedAt;
+    private final long mModuleCreatedAt;
+    private final AtomicLong mForegroundAt = new AtomicLong();
+    private final AtomicLong mInitializedAt = new AtomicLong();
+    private final AtomicLong mFirstTrackAt = new AtomicLong();
+    // the autotracked data with every timing, built once they are all known
+    private volatile Map<String, Object> mCompleteData;
+
+    private AppStartMetrics(boolean cold, long startedAt, long moduleCreatedAt) {
+        mCold = cold;
+        mStartedAt = startedAt;
+        mModuleCreatedAt = moduleCreatedAt;
+    }
+
+    /**
+     * Starts measuring a new start. Called when the module is created.
+     */
+    static void onModuleCreated() {
+        final long now = SystemClock.elapsedRealtime();
+        final boolean cold = sColdStartTaken.compareAndSet(false, true);
+        sCurrent = new AppStartMetrics(cold, cold ? processStartedAt() : now, now);
+    }
+
+    static void onForeground() {
+        mark(sCurrent != null ? sCurrent.mForegroundAt : null);
+    }
+
+    static void onInitialize() {
+        mark(sCurrent != null ? sCurrent.mInitializedAt : null);
+    }
+
+    static void onTrack() {
+        final AppStartMetrics current = sCurrent;
+        if (current != null && current.mFirstTrackAt.get() == 0) {
+            mark(current.mFirstTrackAt);
+        }
+    }
+
+    /**
+     * Returns the autotracked launch data with the timings known so far added, as an immutable map. Timings
+     * of steps that haven't happened yet are left out. Once every timing is known the map is built
+     * once and reused, so base must be the same immutable map on every call.
+     */
+    static Map<String, Object> withTimings(Map<String, Object> base) {
+        final AppStartMetrics current = sCurrent;
+        if (current == null) {
+            return base;
+        }
+        final Map<String, Object> complete = current.mCompleteData;
+        if (complete != null) {
+            return complete;
+        }
+
+        final Map<String, Object> data = new HashMap<>(base);
+        data.put(START_TYPE, current.mCold ? "cold" : "warm");
+        current.putDuration(data, START_TIME, current.mForegroundAt.get());
+        if (current.mCold) {
+            current.putDuration(data, TIME_TO_MODULE, current.mModuleCreatedAt);
+        }
+        current.putDuration(data, TIME_TO_INITIALIZE, current.mInitializedAt.get());
+        current.putDuration(data, TIME_TO_FIRST_TRACK, current.mFirstTrackAt.get());
+
+        final Map<String, Object> result = Collections.unmodifiableMap(data);
+        if (current.mForegroundAt.get() != 0 && current.mInitializedAt.get() != 0 && current.mFirstTrackAt.get() != 0) {
+            current.mCompleteData = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the autotracked data for a wake event, with the time from the resume to the first
+     * frame after it, or without a time if that is negative because the frame never came.
+     */
+    static Map<String, Object> forWake(Map<String, Object> base, long startTimeMillis) {
+        final Map<String, Object> data = new HashMap<>(base);
+        data.put(START_TYPE, "hot");
+        if (startTimeMillis >= 0) {
+            data.put(START_TIME, startTimeMillis);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the elapsedRealtime the current start is measured from: process start for a cold
+     * start, module creation for a warm one.
+     */
+    static long startedAt() {
+        final AppStartMetrics current = sCurrent;
+        return current != null ? current.mStartedAt : processStartedAt();
+    }
+
+    /**
+     * Returns the elapsedRealtime at which the process started, as closely as the API level allows.
+     */
+    static long processStartedAt() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Process.getStartElapsedRealtime();
+        }
+        return CLASS_LOADED_AT;
+    }
+
+    private static void mark(AtomicLong timestamp) {
+        if (timestamp != null) {
+            // only the first occurrence counts
+            timestamp.compareAndSet(0, SystemClock.elapsedRealtime());
+        }
+    }
+
+    private void putDuration(Map<String, Object> data, String key, long timestamp) {
+        if (timestamp != 0) {
+            data.put(key, timestamp - mStartedAt);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.tealiumreactnative;
+
+import android.util.Log;
+
+import com.tealium.library.BuildConfig;
+import com.tealium.library.ConsentManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds back an instance's track calls until the user has consented to every required category.
+ *
+ * The consent status and granted categories are cached here, the categories as a bitset indexed
+ * by {@link ConsentManager#ALL_CONSENT_CATEGORIES}. While the user hasn't decided, track calls are
+ * queued, unconverted, in a bounded buffer that drops the oldest call when full, or dropped if the
+ * gate is set to drop. Once the user consents to the required categories the queue is replayed in
+ * order; if they decline, or consent without a required category, it is discarded.
+ *
+ * Not thread safe; only used on the dispatcher thread.
+ */
+final class ConsentGate {
+
+    static final int DEFAULT_CAPACITY = 100;
+
+    enum Decision {
+        OPEN,
+        UNDECIDED,
+        DENIED
+    }
+
+    private final long mRequiredCategories;
+    private final boolean mQueueUndecided;
+    private final PendingTaskBuffer<TrackingDispatcher.Task> mPending;
+    private final AtomicLong mReleasedCount = new AtomicLong();
+    private final AtomicLong mDiscardedCount = new AtomicLong();
+    private Decision mDecision = Decision.UNDECIDED;
+
+    /**
+     * @param queueUndecided whether to queue track calls until the user decides, rather than drop them
+     */
+    ConsentGate(long requiredCategories, boolean queueUndecided, int capacity) {
+        mRequiredCategories = requiredCategories;
+        mQueueUndecided = queueUndecided;
+        mPending = new PendingTaskBuffer<>(capacity > 0 ? capacity : DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the bitset of the named categories, ignoring names Tealium doesn't know.
+     */
+    static long toCategoryBits(String[] categories) {
+        long bits = 0;
+        if (categories == null) {
+            return bits;
+        }
+        for (String category : categories) {
+            final int index = indexOf(category);
+            if (index >= 0 && index < Long.SIZE) {
+                bits |= 1L << index;
+            } else {
+                Log.w(BuildConfig.TAG, "Unknown consent category: " + category);
+            }
+        }
+        return bits;
+    }
+
+    boolean isOpen() {
+        return mDecision == Decision.OPEN;
+    }
+
+    Decision getDecision() {
+        return mDecision;
+    }
+
+    /**
+     * Queues or drops a track call made while the gate is not open.
+     */
+    void hold(TrackingDispatcher.Task track) {
+        if (mDecision == Decision.UNDECIDED && mQueueUndecided) {
+            if (mPending.add(track) != null) {
+                Log.w(BuildConfig.TAG, "Consent queue full; oldest track call dropped");
+            }
+        } else {
+            mDiscardedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Caches the user's current decision, replaying queued track calls if it opens the gate and
+     * discarding them if it denies them.
+     */
+    void update(String status, String[] categories) {
+        final long granted = toCategoryBits(categories);
+        if (ConsentManager.ConsentStatus.CONSENTED.equals(status)) {
+            mDecision = (granted & mRequiredCategories) == mRequiredCategories ? Decision.OPEN : Decision.DENIED;
+        } else if (ConsentManager.ConsentStatus.NOT_CONSENTED.equals(status)) {
+            mDecision = Decision.DENIED;
+        } else {
+            mDecision = Decision.UNDECIDED;
+        }
+
+        if (mDecision == Decision.OPEN) {
+            TrackingDispatcher.Task track;
+            while ((track = mPending.poll()) != null) {
+                mReleasedCount.incrementAndGet();
+                track.run();
+            }
+        } else if (mDecision == Decision.DENIED) {
+            discardPending();
+        }
+    }
+
+    void discardPending() {
+        while (mPending.poll() != null) {
+            mDiscardedCount.incrementAndGet();
+        }
+    }
+
+    long getPendingCount() {
+        return mPending.getPendingCount();
+    }
+
+    long getQueuedCount() {
+        return mPending.getBufferedCount();
+    }
+
+    long getOverflowCount() {
+        return mPending.getDroppedCount();
+    }
+
+    long getReleasedCount() {
+        return mReleasedCount.get();
+    }
+
+    /**
+     * Track calls dropped, or queued and later discarded, because consent was missing.
+     */
+    long getDiscardedCount() {
+        return mDiscardedCount.get();
+    }
+
+    private static int indexOf(String category) {
+        final String[] all = ConsentManager.ALL_CONSENT_CATEGORIES;
+        for (int i = 0; i < all.length; i++) {
+            if (all[i].equals(category)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,88 @@
+package com.tealiumreactnative;
+
+import com.tealium.library.ConsentManager;
+import com.tealium.library.Tealium;
+import com.tealium.lifecycle.LifeCycle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of resolved Tealium instances, indexed by integer handle.
+ *
+ * Handles are handed out when an instance is created and are never reused, so a stale handle
+ * resolves to null rather than to another instance. Lookups are lock-free; registration and
+ * invalidation are rare and synchronized.
+ */
+final class InstanceHandles {
+
+    static final int INVALID_HANDLE = -1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    static final class Entry {
+        final int mHandle;
+        final String mInstanceName;
+        final Tealium mTealium;
+        final ConsentManager mConsentManager;
+        final LifeCycle mLifeCycle;
+
+        Entry(int handle, String instanceName, Tealium tealium, LifeCycle lifeCycle) {
+            mHandle = handle;
+            mInstanceName = instanceName;
+            mTealium = tealium;
+            mConsentManager = tealium.getConsentManager();
+            mLifeCycle = lifeCycle;
+        }
+    }
+
+    private volatile AtomicReferenceArray<Entry> mEntries = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private final Map<String, Entry> mEntriesByName = new ConcurrentHashMap<>();
+    private int mNextHandle = 0;
+
+    /**
+     * Caches the instance under a fresh handle, invalidating any previous handle for the same name.
+     */
+    synchronized int register(String instanceName, Tealium tealium) {
+        invalidate(instanceName);
+        if (tealium == null) {
+            return INVALID_HANDLE;
+        }
+
+        final int handle = mNextHandle++;
+        AtomicReferenceArray<Entry> entries = mEntries;
+        if (handle >= entries.length()) {
+            AtomicReferenceArray<Entry> grown = new AtomicReferenceArray<>(entries.length() * 2);
+            for (int i = 0; i < entries.length(); i++) {
+                grown.set(i, entries.get(i));
+            }
+            mEntries = entries = grown;
+        }
+
+        final Entry entry = new Entry(handle, instanceName, tealium, LifeCycle.getInstance(instanceName));
+        entries.set(handle, entry);
+        mEntriesByName.put(instanceName, entry);
+        return handle;
+    }
+
+    synchronized void invalidate(String instanceName) {
+        final Entry entry = mEntriesByName.remove(instanceName);
+        if (entry != null) {
+            mEntries.set(entry.mHandle, null);
+        }
+    }
+
+    Entry get(int handle) {
+        final AtomicReferenceArray<Entry> entries = mEntries;
+        return handle >= 0 && handle < entries.length() ? entries.get(handle) : null;
+    }
+
+    Entry get(String instanceName) {
+        return instanceName != null ? mEntriesByName.get(instanceName) : null;
+    }
+
+    int getHandle(String instanceName) {
+        final Entry entry = get(instanceName);
+        return entry != null ? entry.mHandle : INVALID_HANDLE;
+    }
+}
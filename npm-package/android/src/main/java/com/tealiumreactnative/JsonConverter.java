@@ -0,0 +1,259 @@
+package com.tealiumreactnative;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.tealium.library.BuildConfig;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Converts JSONObject/JSONArray values, such as remote command payloads, into bridge data.
+ *
+ * Nesting is walked with an explicit stack rather than recursion, so deep payloads cost no call
+ * stack. Each nested map or array is filled completely before it is added to its parent, as the
+ * native bridge collections are consumed when added.
+ *
+ * Integer and Long values that a JS number holds exactly are passed as numbers; larger longs and
+ * big numbers that would lose precision are passed as strings. JSONObject.NULL becomes null.
+ *
+ * Values nested deeper than maxDepth are dropped, and conversion stops once maxEntries values
+ * have been converted; both cases are logged.
+ */
+class JsonConverter {
+
+    static final int DEFAULT_MAX_DEPTH = 32;
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    // largest magnitude a JS number holds exactly: 2^53
+    private static final long MAX_EXACT_LONG = 1L << 53;
+
+    private volatile int mMaxDepth = DEFAULT_MAX_DEPTH;
+    private volatile int mMaxEntries = DEFAULT_MAX_ENTRIES;
+
+    void setLimits(int maxDepth, int maxEntries) {
+        mMaxDepth = maxDepth > 0 ? maxDepth : DEFAULT_MAX_DEPTH;
+        mMaxEntries = maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES;
+    }
+
+    WritableMap toMap(JSONObject json) {
+        final Walk walk = new Walk(mMaxDepth, mMaxEntries);
+        final Frame root = new Frame(null, null, json, null);
+        convert(root, walk);
+        walk.report();
+        return root.mMap;
+    }
+
+    WritableArray toArray(JSONArray json) {
+        final Walk walk = new Walk(mMaxDepth, mMaxEntries);
+        final Frame root = new Frame(null, null, null, json);
+        convert(root, walk);
+        walk.report();
+        return root.mArray;
+    }
+
+    /**
+     * Creates the bridge collections that are filled. Overridden where the native bridge isn't
+     * loaded, such as in JVM tests.
+     */
+    WritableMap createMap() {
+        return Arguments.createMap();
+    }
+
+    WritableArray createArray() {
+        return Arguments.createArray();
+    }
+
+    private void convert(Frame root, Walk walk) {
+        final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            final Frame frame = stack.peek();
+            if (!frame.hasNext() || !walk.take()) {
+                stack.pop();
+                if (frame.mParent != null) {
+                    frame.mParent.attach(frame);
+                }
+                continue;
+            }
+
+            final String key = frame.nextKey();
+            final Object value = frame.nextValue(key);
+            if (value instanceof JSONObject || value instanceof JSONArray) {
+                final int depth = stack.size() + 1;
+                if (walk.canDescend(depth)) {
+                    stack.push(value instanceof JSONObject
+                            ? new Frame(frame, key, (JSONObject) value, null)
+                            : new Frame(frame, key, null, (JSONArray) value));
+                }
+            } else if (frame.mMap != null) {
+                putValue(frame.mMap, key, value);
+            } else {
+                pushValue(frame.mArray, value);
+            }
+        }
+    }
+
+    private static void putValue(WritableMap map, String key, Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            map.putNull(key);
+        } else if (value instanceof String) {
+            map.putString(key, (String) value);
+        } else if (value instanceof Boolean) {
+            map.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            map.putInt(key, (Integer) value);
+        } else if (value instanceof Number) {
+            final Object number = toBridgeNumber((Number) value);
+            if (number instanceof Double) {
+                map.putDouble(key, (Double) number);
+            } else {
+                map.putString(key, (String) number);
+            }
+        } else {
+            map.putString(key, value.toString());
+        }
+    }
+
+    private static void pushValue(WritableArray array, Object value) {
+        if (value == null || value == JSONObject.NULL) {
+            array.pushNull();
+        } else if (value instanceof String) {
+            array.pushString((String) value);
+        } else if (value instanceof Boolean) {
+            array.pushBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            array.pushInt((Integer) value);
+        } else if (value instanceof Number) {
+            final Object number = toBridgeNumber((Number) value);
+            if (number instanceof Double) {
+                array.pushDouble((Double) number);
+            } else {
+                array.pushString((String) number);
+            }
+        } else {
+            array.pushString(value.toString());
+        }
+    }
+
+    /**
+     * Returns the number as a Double if JS can hold it exactly, otherwise as its decimal String.
+     */
+    private static Object toBridgeNumber(Number number) {
+        if (number instanceof Long || number instanceof Short || number instanceof Byte) {
+            final long value = number.longValue();
+            return value >= -MAX_EXACT_LONG && value <= MAX_EXACT_LONG ? (Object) (double) value : String.valueOf(value);
+        } else if (number instanceof BigInteger || number instanceof BigDecimal) {
+            final BigDecimal exact = number instanceof BigInteger
+                    ? new BigDecimal((BigInteger) number)
+                    : (BigDecimal) number;
+            final double value = exact.doubleValue();
+            return !Double.isInfinite(value) && new BigDecimal(value).compareTo(exact) == 0
+                    ? (Object) value
+                    : exact.toString();
+        }
+        final double value = number.doubleValue();
+        // JSON has no NaN or Infinity, and neither survives the bridge
+        return Double.isNaN(value) || Double.isInfinite(value) ? (Object) String.valueOf(value) : (Object) value;
+    }
+
+    /**
+     * One map or array being converted, and where it goes in its parent once complete.
+     */
+    private final class Frame {
+        final Frame mParent;
+        final String mParentKey;
+        final JSONObject mObject;
+        final JSONArray mJsonArray;
+        final WritableMap mMap;
+        final WritableArray mArray;
+        private final Iterator<String> mKeys;
+        private int mIndex;
+
+        Frame(Frame parent, String parentKey, JSONObject object, JSONArray array) {
+            mParent = parent;
+            mParentKey = parentKey;
+            mObject = object;
+            mJsonArray = array;
+            mMap = object != null ? createMap() : null;
+            mArray = object != null ? null : createArray();
+            mKeys = object != null ? object.keys() : null;
+        }
+
+        boolean hasNext() {
+            return mKeys != null ? mKeys.hasNext() : mIndex < mJsonArray.length();
+        }
+
+        String nextKey() {
+            return mKeys != null ? mKeys.next() : null;
+        }
+
+        Object nextValue(String key) {
+            return mKeys != null ? mObject.opt(key) : mJsonArray.opt(mIndex++);
+        }
+
+        void attach(Frame child) {
+            if (mMap != null) {
+                if (child.mMap != null) {
+                    mMap.putMap(child.mParentKey, child.mMap);
+                } else {
+                    mMap.putArray(child.mParentKey, child.mArray);
+                }
+            } else if (child.mMap != null) {
+                mArray.pushMap(child.mMap);
+            } else {
+                mArray.pushArray(child.mArray);
+            }
+        }
+    }
+
+    /**
+     * Depth and entry budget for a single conversion.
+     */
+    private static final class Walk {
+        private final int mMaxDepth;
+        private int mRemainingEntries;
+        private boolean mDepthExceeded;
+        private boolean mEntriesExceeded;
+
+        Walk(int maxDepth, int maxEntries) {
+            mMaxDepth = maxDepth;
+            mRemainingEntries = maxEntries;
+        }
+
+        boolean take() {
+            if (mRemainingEntries <= 0) {
+                mEntriesExceeded = true;
+                return false;
+            }
+            mRemainingEntries--;
+            return true;
+        }
+
+        boolean canDescend(int depth) {
+            if (depth > mMaxDepth) {
+                mDepthExceeded = true;
+                return false;
+            }
+            return true;
+        }
+
+        void report() {
+            if (mDepthExceeded) {
+                Log.w(BuildConfig.TAG, "JSON value exceeded max depth of " + mMaxDepth + "; deeper values were dropped");
+            }
+            if (mEntriesExceeded) {
+                Log.w(BuildConfig.TAG, "JSON value exceeded max entry count; remaining values were dropped");
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.tealiumreactnative;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Decides when an instance's autotracked launch event is sent.
+ *
+ * The launch is sent once the app is in the foreground and the instance has been created and
+ * reports ready, meaning its tag management webview has loaded, or its publish settings have
+ * tag management turned off. The timeout starts once the app
+ * is in the foreground and the instance is created, so it only bounds the wait for the webview;
+ * if the instance isn't ready by then, the launch is sent anyway and Tealium queues it until it
+ * can be dispatched.
+ */
+abstract class LaunchTrigger {
+
+    static final long DEFAULT_TIMEOUT_MILLIS = 700;
+
+    private final Handler mHandler;
+    private final long mTimeoutMillis;
+    private boolean mHostResumed;
+    private boolean mCreated;
+    private boolean mReady;
+    private boolean mTimedOut;
+    private boolean mTimeoutStarted;
+    private boolean mFired;
+
+    private final Runnable mTimeout = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (LaunchTrigger.this) {
+                mTimedOut = true;
+            }
+            fireIfDue();
+        }
+    };
+
+    private final Runnable mFire = new Runnable() {
+        @Override
+        public void run() {
+            onLaunch(SystemClock.elapsedRealtime() - AppStartMetrics.startedAt());
+        }
+    };
+
+    /**
+     * @param handler where the timeout runs and the launch is sent
+     */
+    LaunchTrigger(Handler handler, long timeoutMillis) {
+        mHandler = handler;
+        mTimeoutMillis = timeoutMillis > 0 ? timeoutMillis : DEFAULT_TIMEOUT_MILLIS;
+    }
+
+    /**
+     * Sends the launch event. Runs once, on the handler's thread.
+     *
+     * @param latencyMillis time from the start of the app to now: process start for a cold start,
+     *                      module creation for a warm one
+     */
+    abstract void onLaunch(long latencyMillis);
+
+    /**
+     * @return false once the launch has been sent, so the resume is a wake instead
+     */
+    boolean onHostResumed() {
+        synchronized (this) {
+            if (mFired) {
+                return false;
+            }
+            if (mHostResumed) {
+                return true;
+            }
+            mHostResumed = true;
+        }
+        startTimeoutIfDue();
+        fireIfDue();
+        return true;
+    }
+
+    void onInstanceCreated() {
+        synchronized (this) {
+            mCreated = true;
+        }
+        startTimeoutIfDue();
+        fireIfDue();
+    }
+
+    void onInstanceReady() {
+        synchronized (this) {
+            mReady = true;
+        }
+        fireIfDue();
+    }
+
+    private void startTimeoutIfDue() {
+        synchronized (this) {
+            if (mTimeoutStarted || !mHostResumed || !mCreated) {
+                return;
+            }
+            mTimeoutStarted = true;
+        }
+        mHandler.postDelayed(mTimeout, mTimeoutMillis);
+    }
+
+    private void fireIfDue() {
+        synchronized (this) {
+            if (mFired || !mHostResumed || !mCreated || !(mReady || mTimedOut)) {
+                return;
+            }
+            mFired = true;
+        }
+        mHandler.removeCallbacks(mTimeout);
+        mHandler.post(mFire);
+    }
+}
@@ -0,0 +1,113 @@
+package com.tealiumreactnative;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only view of one map laid over another: keys in the top map hide the same keys in the base.
+ *
+ * Lets a track send the event data on top of large, unchanging module data without copying the
+ * module data into a new map for every event. Neither map may change while the view is in use.
+ */
+final class LayeredMap extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> mTop;
+    private final Map<String, Object> mBase;
+    private int mSize = -1;
+    private Set<Map.Entry<String, Object>> mEntrySet;
+
+    LayeredMap(Map<String, Object> top, Map<String, Object> base) {
+        mTop = top;
+        mBase = base;
+    }
+
+    @Override
+    public Object get(Object key) {
+        return mTop.containsKey(key) ? mTop.get(key) : mBase.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return mTop.containsKey(key) || mBase.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        if (mSize < 0) {
+            // only the top map is walked; the base may be large
+            int size = mBase.size();
+            for (String key : mTop.keySet()) {
+                if (!mBase.containsKey(key)) {
+                    size++;
+                }
+            }
+            mSize = size;
+        }
+        return mSize;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (mEntrySet == null) {
+            mEntrySet = new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new LayeredIterator();
+                }
+
+                @Override
+                public int size() {
+                    return LayeredMap.this.size();
+                }
+            };
+        }
+        return mEntrySet;
+    }
+
+    /**
+     * Walks the top map, then the base entries the top map doesn't hide.
+     */
+    private final class LayeredIterator implements Iterator<Map.Entry<String, Object>> {
+        private final Iterator<Map.Entry<String, Object>> mTopEntries = mTop.entrySet().iterator();
+        private final Iterator<Map.Entry<String, Object>> mBaseEntries = mBase.entrySet().iterator();
+        private Map.Entry<String, Object> mNext;
+
+        @Override
+        public boolean hasNext() {
+            if (mNext != null) {
+                return true;
+            }
+            if (mTopEntries.hasNext()) {
+                mNext = mTopEntries.next();
+                return true;
+            }
+            while (mBaseEntries.hasNext()) {
+                final Map.Entry<String, Object> entry = mBaseEntries.next();
+                if (!mTop.containsKey(entry.getKey())) {
+                    mNext = entry;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public Map.Entry<String, Object> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Map.Entry<String, Object> next = mNext;
+            mNext = null;
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
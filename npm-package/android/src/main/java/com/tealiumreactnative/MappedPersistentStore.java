@@ -0,0 +1,565 @@
+package com.tealiumreactnative;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import com.tealium.library.BuildConfig;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent key-value store backed by a memory-mapped, append-only log.
+ *
+ * Every put or remove appends one record, so a write costs the size of the changed entry rather
+ * than a rewrite of the whole file. Records are framed as [length][crc32][payload]; the length is
+ * written last and acts as the commit marker. On open, the log is replayed up to the first record
+ * that is incomplete or fails its checksum, and everything after it is discarded.
+ *
+ * Once superseded records outweigh live ones the log is compacted into a fresh file that replaces
+ * the old one with an atomic rename.
+ *
+ * A write is in the page cache as soon as it returns, so it survives the process being killed.
+ * Surviving power loss or a kernel crash takes {@link #force()}, which TealiumModule calls when
+ * persistent data is committed and when the app goes to the background; writes made since then can
+ * be lost, and the checksums make sure only whole records come back.
+ *
+ * Tracks read the store through an immutable snapshot, with string sets as lists, that is rebuilt
+ * on the first read after a write rather than copied per track.
+ *
+ * Not thread-safe; TealiumModule only uses it from the dispatcher thread.
+ */
+final class MappedPersistentStore {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x544C4D50;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int INITIAL_FILE_SIZE = 64 * 1024;
+    private static final int COMPACTION_MIN_SIZE = 64 * 1024;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_STRING_SET = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_DOUBLE = 5;
+    private static final byte TYPE_MAP = 6;
+    private static final byte TYPE_LIST = 7;
+    private static final byte TYPE_NULL = 8;
+
+    private final File mFile;
+    private final Map<String, Object> mValues = new HashMap<>();
+    private final Map<String, Integer> mRecordSizes = new HashMap<>();
+    private final CRC32 mCrc = new CRC32();
+
+    private RandomAccessFile mRandomAccessFile;
+    private MappedByteBuffer mBuffer;
+    private int mWritePosition;
+    private long mLiveBytes;
+    private long mLoadTimeNanos;
+    private Map<String, Object> mSnapshot;
+
+    private MappedPersistentStore(File file) {
+        mFile = file;
+    }
+
+    static MappedPersistentStore open(File file) throws IOException {
+        final MappedPersistentStore store = new MappedPersistentStore(file);
+        final long startTime = System.nanoTime();
+        store.load();
+        store.mLoadTimeNanos = System.nanoTime() - startTime;
+        Log.i(BuildConfig.TAG, "Loaded " + store.mValues.size() + " persistent keys from " + file.getName()
+                + " in " + store.mLoadTimeNanos / 1e6 + " ms");
+        return store;
+    }
+
+    /**
+     * Returns the store's file for an instance. Characters that are not safe in a file name are
+     * replaced, and the name's hash is appended so different names can't share a file.
+     */
+    static File fileFor(File directory, String instanceName) {
+        final String safeName = instanceName.replaceAll("[^A-Za-z0-9_-]", "_");
+        final String fileName = safeName.equals(instanceName)
+                ? safeName
+                : safeName + "-" + Integer.toHexString(instanceName.hashCode());
+        return new File(directory, fileName + ".log");
+    }
+
+    boolean contains(String key) {
+        return mValues.containsKey(key);
+    }
+
+    Object get(String key) {
+        return mValues.get(key);
+    }
+
+    /**
+     * Returns every entry as an immutable map, with string sets and arrays as lists as tracks send
+     * them. The map is built once per change to the store.
+     */
+    Map<String, Object> getSnapshot() {
+        if (mSnapshot == null) {
+            final Map<String, Object> snapshot = new HashMap<>(mValues.size() * 2);
+            for (Map.Entry<String, Object> entry : mValues.entrySet()) {
+                final Object value = entry.getValue();
+                snapshot.put(entry.getKey(), value instanceof Set
+                        ? new ArrayList<>((Set<?>) value)
+                        : value instanceof JSONArray ? toList((JSONArray) value) : value);
+            }
+            mSnapshot = Collections.unmodifiableMap(snapshot);
+        }
+        return mSnapshot;
+    }
+
+    int size() {
+        return mValues.size();
+    }
+
+    long getLoadTimeNanos() {
+        return mLoadTimeNanos;
+    }
+
+    long getFileSize() {
+        return mBuffer != null ? mBuffer.capacity() : 0;
+    }
+
+    long getLiveBytes() {
+        return mLiveBytes;
+    }
+
+    /**
+     * @param values String, Set&lt;String&gt;, Boolean, Long, Double or JSONObject values
+     */
+    void putAll(Map<String, Object> values) throws IOException {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            append(OP_PUT, entry.getKey(), entry.getValue());
+            mValues.put(entry.getKey(), entry.getValue());
+            mSnapshot = null;
+        }
+    }
+
+    void remove(String key) throws IOException {
+        if (!mValues.containsKey(key)) {
+            return;
+        }
+        append(OP_REMOVE, key, null);
+        mValues.remove(key);
+        mSnapshot = null;
+    }
+
+    /**
+     * Flushes the mapped pages to storage.
+     */
+    void force() {
+        mBuffer.force();
+    }
+
+    void close() {
+        try {
+            mBuffer.force();
+            mRandomAccessFile.close();
+        } catch (IOException e) {
+            Log.e(BuildConfig.TAG, "Could not close persistent store " + mFile.getName(), e);
+        }
+    }
+
+    private void load() throws IOException {
+        final File compactionFile = getCompactionFile();
+        if (compactionFile.exists() && !compactionFile.delete()) {
+            Log.w(BuildConfig.TAG, "Could not delete stale compaction file " + compactionFile.getName());
+        }
+
+        final boolean isNew = !mFile.exists() || mFile.length() < HEADER_SIZE;
+        map(Math.max(INITIAL_FILE_SIZE, isNew ? 0 : mFile.length()));
+        if (isNew || mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != FORMAT_VERSION) {
+            if (!isNew) {
+                Log.w(BuildConfig.TAG, "Unrecognized persistent store " + mFile.getName() + ", starting empty");
+            }
+            writeHeader(mBuffer);
+            mWritePosition = HEADER_SIZE;
+            if (!isNew) {
+                zeroFrom(mWritePosition);
+            }
+            return;
+        }
+
+        int position = HEADER_SIZE;
+        boolean corrupt = false;
+        while (position + RECORD_HEADER_SIZE <= mBuffer.capacity()) {
+            final int length = mBuffer.getInt(position);
+            if (length == 0) {
+                // the clean end of the log
+                break;
+            }
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > mBuffer.capacity()) {
+                Log.w(BuildConfig.TAG, "Discarding truncated tail of persistent store " + mFile.getName());
+                corrupt = true;
+                break;
+            }
+
+            final byte[] payload = new byte[length];
+            mBuffer.position(position + RECORD_HEADER_SIZE);
+            mBuffer.get(payload);
+            mCrc.reset();
+            mCrc.update(payload, 0, length);
+            if ((int) mCrc.getValue() != mBuffer.getInt(position + 4)) {
+                Log.w(BuildConfig.TAG, "Discarding corrupt tail of persistent store " + mFile.getName());
+                corrupt = true;
+                break;
+            }
+
+            try {
+                applyRecord(ByteBuffer.wrap(payload), RECORD_HEADER_SIZE + length);
+            } catch (RuntimeException e) {
+                Log.w(BuildConfig.TAG, "Discarding unreadable tail of persistent store " + mFile.getName(), e);
+                corrupt = true;
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        mWritePosition = position;
+        if (corrupt) {
+            // valid records may follow the bad one; clear them so they can't resurface behind new writes.
+            // After a clean end the rest of the file is already zero, or holds a write whose length was
+            // never committed, so it is left untouched and cold loads don't page in the whole file.
+            zeroFrom(mWritePosition);
+        }
+    }
+
+    private void applyRecord(ByteBuffer payload, int recordSize) {
+        final byte op = payload.get();
+        final String key = readString(payload);
+        final Object value = op == OP_PUT ? readValue(payload) : null;
+        discard(key);
+        if (op == OP_PUT) {
+            mValues.put(key, value);
+            mRecordSizes.put(key, recordSize);
+            mLiveBytes += recordSize;
+        } else {
+            mValues.remove(key);
+        }
+    }
+
+    private void append(byte op, String key, Object value) throws IOException {
+        final byte[] record = encode(op, key, value);
+        ensureCapacity(RECORD_HEADER_SIZE + record.length);
+
+        final int position = mWritePosition;
+        mCrc.reset();
+        mCrc.update(record, 0, record.length);
+        mBuffer.position(position + RECORD_HEADER_SIZE);
+        mBuffer.put(record);
+        mBuffer.putInt(position + 4, (int) mCrc.getValue());
+        // the length goes in last: a record only exists once it is complete
+        mBuffer.putInt(position, record.length);
+        mWritePosition = position + RECORD_HEADER_SIZE + record.length;
+
+        discard(key);
+        if (op == OP_PUT) {
+            mRecordSizes.put(key, RECORD_HEADER_SIZE + record.length);
+            mLiveBytes += RECORD_HEADER_SIZE + record.length;
+        }
+    }
+
+    private void discard(String key) {
+        final Integer previousSize = mRecordSizes.remove(key);
+        if (previousSize != null) {
+            mLiveBytes -= previousSize;
+        }
+    }
+
+    private void ensureCapacity(int recordSize) throws IOException {
+        if (mWritePosition + recordSize <= mBuffer.capacity()) {
+            return;
+        }
+
+        final long deadBytes = mWritePosition - HEADER_SIZE - mLiveBytes;
+        if (mWritePosition >= COMPACTION_MIN_SIZE && deadBytes > mLiveBytes) {
+            compact();
+        }
+
+        long size = mBuffer.capacity();
+        while (mWritePosition + recordSize > size) {
+            size *= 2;
+        }
+        if (size != mBuffer.capacity()) {
+            map(size);
+        }
+    }
+
+    /**
+     * Rewrites only the live entries into a new file, then swaps it in with an atomic rename. The
+     * store keeps using the old file, unchanged, unless the rename succeeds.
+     */
+    private void compact() throws IOException {
+        final File compactionFile = getCompactionFile();
+        final long startTime = System.nanoTime();
+
+        int size = HEADER_SIZE;
+        final Map<String, byte[]> records = new HashMap<>(mValues.size());
+        for (Map.Entry<String, Object> entry : mValues.entrySet()) {
+            byte[] record = encode(OP_PUT, entry.getKey(), entry.getValue());
+            records.put(entry.getKey(), record);
+            size += RECORD_HEADER_SIZE + record.length;
+        }
+
+        final Map<String, Integer> recordSizes = new HashMap<>(records.size());
+        long liveBytes = 0;
+        final RandomAccessFile compacted = new RandomAccessFile(compactionFile, "rw");
+        try {
+            final ByteBuffer out = ByteBuffer.allocate(size);
+            writeHeader(out);
+            for (Map.Entry<String, byte[]> entry : records.entrySet()) {
+                final byte[] record = entry.getValue();
+                mCrc.reset();
+                mCrc.update(record, 0, record.length);
+                out.putInt(record.length);
+                out.putInt((int) mCrc.getValue());
+                out.put(record);
+                recordSizes.put(entry.getKey(), RECORD_HEADER_SIZE + record.length);
+                liveBytes += RECORD_HEADER_SIZE + record.length;
+            }
+            out.flip();
+            compacted.getChannel().write(out);
+            compacted.getFD().sync();
+        } finally {
+            compacted.close();
+        }
+
+        // the old file stays open and mapped through the rename; on failure nothing has changed
+        if (!compactionFile.renameTo(mFile)) {
+            if (!compactionFile.delete()) {
+                Log.w(BuildConfig.TAG, "Could not delete compaction file " + compactionFile.getName());
+            }
+            throw new IOException("Could not replace " + mFile.getName() + " with compacted log");
+        }
+        syncDirectory();
+
+        mRandomAccessFile.close();
+        mRandomAccessFile = null;
+        mRecordSizes.clear();
+        mRecordSizes.putAll(recordSizes);
+        mLiveBytes = liveBytes;
+        mWritePosition = size;
+        // the compacted file ends at size; extending it fills the rest with zeros
+        map(Math.max(INITIAL_FILE_SIZE, (long) size * 2));
+        Log.d(BuildConfig.TAG, "Compacted persistent store " + mFile.getName() + " to " + size + " bytes in "
+                + (System.nanoTime() - startTime) / 1e6 + " ms");
+    }
+
+    /**
+     * Flushes the directory entry written by the rename, so a crash can't bring back the old log.
+     * Java has no way to open a directory, so this needs android.system.Os, from API 21.
+     */
+    private void syncDirectory() {
+        final File directory = mFile.getAbsoluteFile().getParentFile();
+        if (directory == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        try {
+            final FileDescriptor fd = Os.open(directory.getPath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+        } catch (ErrnoException e) {
+            Log.w(BuildConfig.TAG, "Could not sync directory of persistent store " + mFile.getName(), e);
+        }
+    }
+
+    private void map(long size) throws IOException {
+        if (mRandomAccessFile == null) {
+            final File parent = mFile.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Could not create directory for " + mFile.getName());
+            }
+            mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+        }
+        if (mRandomAccessFile.length() < size) {
+            mRandomAccessFile.setLength(size);
+        }
+        mBuffer = mRandomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private File getCompactionFile() {
+        return new File(mFile.getPath() + ".compact");
+    }
+
+    private void zeroFrom(int position) {
+        for (int i = position; i < mBuffer.capacity(); i++) {
+            if (mBuffer.get(i) != 0) {
+                mBuffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    private static List<Object> toList(JSONArray array) {
+        final List<Object> list = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            list.add(array.opt(i));
+        }
+        return list;
+    }
+
+    private static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.position(HEADER_SIZE);
+    }
+
+    private static byte[] encode(byte op, String key, Object value) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(op);
+        writeString(out, key);
+        if (op == OP_PUT) {
+            writeValue(out, value);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a value as a one-byte type tag followed by its compact binary form. Maps and lists are
+     * written recursively as a count followed by their entries.
+     */
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Set) {
+            final Set<?> set = (Set<?>) value;
+            out.writeByte(TYPE_STRING_SET);
+            out.writeInt(set.size());
+            for (Object item : set) {
+                writeString(out, String.valueOf(item));
+            }
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Long || value instanceof Integer) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Number) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof JSONObject) {
+            final JSONObject map = (JSONObject) value;
+            out.writeByte(TYPE_MAP);
+            out.writeInt(map.length());
+            final Iterator<String> keys = map.keys();
+            while (keys.hasNext()) {
+                final String key = keys.next();
+                writeString(out, key);
+                writeValue(out, map.opt(key));
+            }
+        } else if (value instanceof JSONArray) {
+            final JSONArray list = (JSONArray) value;
+            out.writeByte(TYPE_LIST);
+            out.writeInt(list.length());
+            for (int i = 0; i < list.length(); i++) {
+                writeValue(out, list.opt(i));
+            }
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(out, String.valueOf(value));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Object readValue(ByteBuffer payload) {
+        final byte type = payload.get();
+        switch (type) {
+            case TYPE_STRING:
+                return readString(payload);
+            case TYPE_STRING_SET: {
+                final int count = payload.getInt();
+                final Set<String> set = new HashSet<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    set.add(readString(payload));
+                }
+                return set;
+            }
+            case TYPE_BOOLEAN:
+                return payload.get() != 0;
+            case TYPE_LONG:
+                return payload.getLong();
+            case TYPE_DOUBLE:
+                return payload.getDouble();
+            case TYPE_MAP: {
+                final int count = payload.getInt();
+                final JSONObject map = new JSONObject();
+                for (int i = 0; i < count; i++) {
+                    final String key = readString(payload);
+                    try {
+                        map.put(key, readNestedValue(payload));
+                    } catch (JSONException e) {
+                        throw new IllegalStateException("Invalid value for key: " + key, e);
+                    }
+                }
+                return map;
+            }
+            case TYPE_LIST: {
+                final int count = payload.getInt();
+                final JSONArray list = new JSONArray();
+                for (int i = 0; i < count; i++) {
+                    list.put(readNestedValue(payload));
+                }
+                return list;
+            }
+            case TYPE_NULL:
+                return null;
+            default:
+                throw new IllegalStateException("Unknown value type: " + type);
+        }
+    }
+
+    private static Object readNestedValue(ByteBuffer payload) {
+        final Object value = readValue(payload);
+        return value != null ? value : JSONObject.NULL;
+    }
+
+    private static String readString(ByteBuffer payload) {
+        final byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,19 @@
+package com.tealiumreactnative;
+
+import com.tealium.internal.tagbridge.RemoteCommand;
+
+/**
+ * Handles a remote command in native code, without a round trip through JS.
+ *
+ * Register one with {@link TealiumReactNative#registerRemoteCommandHandler} or
+ * {@link TealiumPackage#addRemoteCommandHandler}. Invocations run one at a time, in order, on a
+ * background thread shared by all native handlers.
+ */
+public interface NativeRemoteCommandHandler {
+
+    /**
+     * @param instanceName name of the Tealium instance that invoked the command
+     * @param response     carries the request payload; call send() on it if the tag expects a response
+     */
+    void onInvoke(String instanceName, RemoteCommand.Response response) throws Exception;
+}
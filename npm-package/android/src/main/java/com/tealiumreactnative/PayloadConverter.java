@@ -0,0 +1,259 @@
+package com.tealiumreactnative;
+
+import android.util.Log;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.tealium.library.BuildConfig;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts ReadableMap event data into the payload shape the Tealium library expects, walking the
+ * bridge data exactly once. Top-level values are kept as String, Double, Boolean or List, while
+ * maps become JSONObject and anything nested below a map or list becomes JSONObject/JSONArray.
+ *
+ * Data values (see {@link #toDataValues}) are converted the same way, except that whole numbers
+ * become Long at every depth, so they don't reach tags as "5.0".
+ *
+ * Values nested deeper than maxDepth are dropped, and conversion stops once maxEntries values
+ * have been converted; both cases are logged.
+ */
+final class PayloadConverter {
+
+    static final int DEFAULT_MAX_DEPTH = 16;
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    // largest integer a JS number holds exactly: 2^53 - 1
+    private static final double MAX_SAFE_INTEGER = 9007199254740991d;
+
+    private volatile int mMaxDepth = DEFAULT_MAX_DEPTH;
+    private volatile int mMaxEntries = DEFAULT_MAX_ENTRIES;
+
+    void setLimits(int maxDepth, int maxEntries) {
+        mMaxDepth = maxDepth > 0 ? maxDepth : DEFAULT_MAX_DEPTH;
+        mMaxEntries = maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES;
+    }
+
+    Map<String, Object> toPayload(ReadableMap data) {
+        return convert(data, new Walk(mMaxDepth, mMaxEntries, false));
+    }
+
+    /**
+     * Converts volatile or persistent data, with whole numbers as Long at every depth.
+     */
+    Map<String, Object> toDataValues(ReadableMap data) {
+        return convert(data, new Walk(mMaxDepth, mMaxEntries, true));
+    }
+
+    private Map<String, Object> convert(ReadableMap data, Walk walk) {
+        final Map<String, Object> payload = new HashMap<>();
+
+        ReadableMapKeySetIterator iterator = data.keySetIterator();
+        while (iterator.hasNextKey() && walk.take()) {
+            String key = iterator.nextKey();
+            switch (data.getType(key)) {
+                case Null:
+                    payload.put(key, null);
+                    break;
+                case Boolean:
+                    payload.put(key, data.getBoolean(key));
+                    break;
+                case Number:
+                    payload.put(key, walk.number(data.getDouble(key)));
+                    break;
+                case String:
+                    payload.put(key, data.getString(key));
+                    break;
+                case Map:
+                    if (walk.canDescend(1)) {
+                        payload.put(key, toJsonObject(data.getMap(key), 2, walk));
+                    }
+                    break;
+                case Array:
+                    if (walk.canDescend(1)) {
+                        payload.put(key, toList(data.getArray(key), walk));
+                    }
+                    break;
+            }
+        }
+
+        walk.report();
+        return payload;
+    }
+
+    private List<Object> toList(ReadableArray array, Walk walk) {
+        final int size = array.size();
+        final List<Object> list = new ArrayList<>(size);
+
+        for (int i = 0; i < size && walk.take(); i++) {
+            switch (array.getType(i)) {
+                case Null:
+                    list.add(null);
+                    break;
+                case Boolean:
+                    list.add(array.getBoolean(i));
+                    break;
+                case Number:
+                    list.add(walk.number(array.getDouble(i)));
+                    break;
+                case String:
+                    list.add(array.getString(i));
+                    break;
+                case Map:
+                    if (walk.canDescend(2)) {
+                        list.add(toJsonObject(array.getMap(i), 3, walk));
+                    }
+                    break;
+                case Array:
+                    if (walk.canDescend(2)) {
+                        list.add(toJsonArray(array.getArray(i), 3, walk));
+                    }
+                    break;
+            }
+        }
+        return list;
+    }
+
+    private JSONObject toJsonObject(ReadableMap map, int depth, Walk walk) {
+        final JSONObject json = new JSONObject();
+
+        ReadableMapKeySetIterator iterator = map.keySetIterator();
+        while (iterator.hasNextKey() && walk.take()) {
+            String key = iterator.nextKey();
+            try {
+                switch (map.getType(key)) {
+                    case Null:
+                        json.put(key, JSONObject.NULL);
+                        break;
+                    case Boolean:
+                        json.put(key, map.getBoolean(key));
+                        break;
+                    case Number:
+                        json.put(key, walk.number(map.getDouble(key)));
+                        break;
+                    case String:
+                        json.put(key, map.getString(key));
+                        break;
+                    case Map:
+                        if (walk.canDescend(depth)) {
+                            json.put(key, toJsonObject(map.getMap(key), depth + 1, walk));
+                        }
+                        break;
+                    case Array:
+                        if (walk.canDescend(depth)) {
+                            json.put(key, toJsonArray(map.getArray(key), depth + 1, walk));
+                        }
+                        break;
+                }
+            } catch (JSONException e) {
+                Log.e(BuildConfig.TAG, "Could not convert value for key: " + key, e);
+            }
+        }
+        return json;
+    }
+
+    private JSONArray toJsonArray(ReadableArray array, int depth, Walk walk) {
+        final JSONArray json = new JSONArray();
+        final int size = array.size();
+
+        for (int i = 0; i < size && walk.take(); i++) {
+            try {
+                switch (array.getType(i)) {
+                    case Null:
+                        json.put(JSONObject.NULL);
+                        break;
+                    case Boolean:
+                        json.put(array.getBoolean(i));
+                        break;
+                    case Number:
+                        final double number = array.getDouble(i);
+                        if (walk.isLong(number)) {
+                            json.put((long) number);
+                        } else {
+                            json.put(number);
+                        }
+                        break;
+                    case String:
+                        json.put(array.getString(i));
+                        break;
+                    case Map:
+                        if (walk.canDescend(depth)) {
+                            json.put(toJsonObject(array.getMap(i), depth + 1, walk));
+                        }
+                        break;
+                    case Array:
+                        if (walk.canDescend(depth)) {
+                            json.put(toJsonArray(array.getArray(i), depth + 1, walk));
+                        }
+                        break;
+                }
+            } catch (JSONException e) {
+                Log.e(BuildConfig.TAG, "Could not convert value at index: " + i, e);
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Depth and entry budget for a single conversion.
+     */
+    private static final class Walk {
+        private final int mMaxDepth;
+        private final boolean mWholeNumbersAsLong;
+        private int mRemainingEntries;
+        private boolean mDepthExceeded;
+        private boolean mEntriesExceeded;
+
+        Walk(int maxDepth, int maxEntries, boolean wholeNumbersAsLong) {
+            mMaxDepth = maxDepth;
+            mRemainingEntries = maxEntries;
+            mWholeNumbersAsLong = wholeNumbersAsLong;
+        }
+
+        Object number(double value) {
+            return isLong(value) ? (Object) (long) value : (Object) value;
+        }
+
+        /**
+         * JS only has doubles; when converting data, whole numbers it holds exactly become Long.
+         */
+        boolean isLong(double value) {
+            return mWholeNumbersAsLong && value == Math.rint(value) && Math.abs(value) <= MAX_SAFE_INTEGER;
+        }
+
+        boolean take() {
+            if (mRemainingEntries <= 0) {
+                mEntriesExceeded = true;
+                return false;
+            }
+            mRemainingEntries--;
+            return true;
+        }
+
+        boolean canDescend(int depth) {
+            if (depth >= mMaxDepth) {
+                mDepthExceeded = true;
+                return false;
+            }
+            return true;
+        }
+
+        void report() {
+            if (mDepthExceeded) {
+                Log.w(BuildConfig.TAG, "Payload exceeded max depth of " + mMaxDepth + "; deeper values were dropped");
+            }
+            if (mEntriesExceeded) {
+                Log.w(BuildConfig.TAG, "Payload exceeded max entry count; remaining values were dropped");
+            }
+        }
+    }
+}
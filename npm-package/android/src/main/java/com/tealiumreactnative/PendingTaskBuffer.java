@@ -0,0 +1,128 @@
+package com.tealiumreactnative;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded FIFO holding work for a Tealium instance that has not been created yet. When full, the
+ * oldest droppable task (a track) is dropped to make room. Tasks that aren't droppable, such as data
+ * setters and getters, are kept past the capacity rather than lost, up to a hard limit of
+ * {@link #HARD_CAPACITY_FACTOR} times the capacity, beyond which they are rejected. A droppable
+ * task that finds nothing else to drop is dropped itself.
+ *
+ * The buffer also remembers when it last went from empty to holding tasks, so work for an instance
+ * that is never created can be expired.
+ *
+ * Only the dispatcher thread adds and polls; the counters may be read from any thread.
+ */
+final class PendingTaskBuffer<T extends TrackingDispatcher.Task> {
+
+    static final int DEFAULT_CAPACITY = 100;
+    static final int HARD_CAPACITY_FACTOR = 10;
+
+    private final ArrayDeque<T> mTasks;
+    private final int mCapacity;
+    private long mFirstAddedAt;
+    private final AtomicLong mBufferedCount = new AtomicLong();
+    private final AtomicLong mReplayedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    PendingTaskBuffer(int capacity) {
+        mCapacity = capacity;
+        mTasks = new ArrayDeque<>(Math.min(capacity, 16));
+    }
+
+    boolean isEmpty() {
+        return mTasks.isEmpty();
+    }
+
+    /**
+     * Adds the task without a timestamp, for buffers that are never expired.
+     *
+     * @return the task dropped to make room, which may be the given one, or null
+     */
+    T add(T task) {
+        return add(task, 0);
+    }
+
+    /**
+     * @param now the current time in milliseconds, on the clock later passed to {@link #isExpired}
+     * @return the task dropped to make room, which may be the given one, or null
+     */
+    T add(T task, long now) {
+        mBufferedCount.incrementAndGet();
+        T dropped = null;
+        if (mTasks.size() >= mCapacity) {
+            dropped = removeOldestDroppable();
+            if (dropped == null && (task.mDroppable || mTasks.size() >= mCapacity * HARD_CAPACITY_FACTOR)) {
+                dropped = task;
+            }
+        }
+        if (dropped != null) {
+            mDroppedCount.incrementAndGet();
+        }
+        if (dropped != task) {
+            if (mTasks.isEmpty()) {
+                mFirstAddedAt = now;
+            }
+            mTasks.add(task);
+        }
+        return dropped;
+    }
+
+    /**
+     * @return true if tasks have been waiting, without the buffer emptying, for at least maxAgeMillis
+     */
+    boolean isExpired(long now, long maxAgeMillis) {
+        return !mTasks.isEmpty() && now - mFirstAddedAt >= maxAgeMillis;
+    }
+
+    T poll() {
+        final T task = mTasks.poll();
+        if (task != null) {
+            mReplayedCount.incrementAndGet();
+        }
+        return task;
+    }
+
+    /**
+     * Drops every pending task, returning them so the caller can settle their callbacks.
+     */
+    List<T> clear() {
+        final List<T> dropped = new ArrayList<>(mTasks);
+        mTasks.clear();
+        mDroppedCount.addAndGet(dropped.size());
+        return dropped;
+    }
+
+    long getBufferedCount() {
+        return mBufferedCount.get();
+    }
+
+    long getReplayedCount() {
+        return mReplayedCount.get();
+    }
+
+    long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    long getPendingCount() {
+        return mBufferedCount.get() - mReplayedCount.get() - mDroppedCount.get();
+    }
+
+    private T removeOldestDroppable() {
+        final Iterator<T> tasks = mTasks.iterator();
+        while (tasks.hasNext()) {
+            final T task = tasks.next();
+            if (task.mDroppable) {
+                tasks.remove();
+                return task;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,168 @@
+package com.tealiumreactnative;
+
+import android.content.SharedPreferences;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-memory mirror of an instance's persistent data, so single-key reads do not copy the whole
+ * preferences map through SharedPreferences.getAll().
+ *
+ * The mirror is loaded on first read and is confined to the dispatcher thread. Writes made through
+ * TealiumModule update it directly, and are recorded before they are applied so that the change
+ * listener can skip them. Changes made elsewhere only mark their key; the listener runs on the main
+ * thread and never waits on the dispatcher. Marked keys are re-read on the dispatcher thread at the
+ * next read.
+ */
+final class PersistentDataCache implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    private static final Object REMOVED = new Object();
+
+    private final SharedPreferences mPreferences;
+    // values this module wrote and has not yet been notified of, or REMOVED
+    private final ConcurrentMap<String, Object> mOwnWrites = new ConcurrentHashMap<>();
+    private final Set<String> mChangedKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean mCleared;
+    private Map<String, Object> mValues;
+
+    PersistentDataCache(SharedPreferences preferences) {
+        mPreferences = preferences;
+        // SharedPreferences only keeps a weak reference to its listeners; the owner of this cache keeps it alive
+        mPreferences.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    Object get(String key) {
+        applyChanges();
+        if (mValues == null) {
+            mValues = new HashMap<>(mPreferences.getAll());
+        }
+        return mValues.get(key);
+    }
+
+    /**
+     * Records values about to be written through an editor; call before apply().
+     */
+    void putAll(Map<String, Object> values) {
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            mOwnWrites.put(entry.getKey(), entry.getValue());
+        }
+        if (mValues != null) {
+            mValues.putAll(values);
+        }
+    }
+
+    /**
+     * Records a key about to be removed through an editor; call before apply().
+     */
+    void remove(String key) {
+        mOwnWrites.put(key, REMOVED);
+        if (mValues != null) {
+            mValues.remove(key);
+        }
+    }
+
+    void close() {
+        mPreferences.unregisterOnSharedPreferenceChangeListener(this);
+        mValues = null;
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (key == null) {
+            // preferences were cleared; reload on next read
+            mCleared = true;
+            return;
+        }
+        final Object written = mOwnWrites.remove(key);
+        if (written != null && isCurrent(key, written)) {
+            return;
+        }
+        mChangedKeys.add(key);
+    }
+
+    private void applyChanges() {
+        if (mCleared) {
+            mCleared = false;
+            mChangedKeys.clear();
+            mValues = null;
+            return;
+        }
+        if (mChangedKeys.isEmpty()) {
+            return;
+        }
+        final Iterator<String> keys = mChangedKeys.iterator();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            keys.remove();
+            if (mValues != null) {
+                refresh(key);
+            }
+        }
+    }
+
+    /**
+     * Whether the preference still holds the value this module wrote, so the mirror is up to date.
+     */
+    private boolean isCurrent(String key, Object written) {
+        if (written == REMOVED) {
+            return !mPreferences.contains(key);
+        }
+        if (!mPreferences.contains(key)) {
+            return false;
+        }
+        try {
+            if (written instanceof Set) {
+                return written.equals(mPreferences.getStringSet(key, null));
+            } else if (written instanceof Boolean) {
+                return written.equals(mPreferences.getBoolean(key, false));
+            } else if (written instanceof Long) {
+                return written.equals(mPreferences.getLong(key, 0));
+            } else if (written instanceof Float) {
+                return written.equals(mPreferences.getFloat(key, 0));
+            }
+            return written.equals(mPreferences.getString(key, null));
+        } catch (ClassCastException changedType) {
+            return false;
+        }
+    }
+
+    private void refresh(String key) {
+        final Object value = readValue(key);
+        if (value != null) {
+            mValues.put(key, value);
+        } else {
+            mValues.remove(key);
+        }
+    }
+
+    /**
+     * Reads a single value using the type of the value it replaces as a hint, so the whole map is
+     * only copied when the key changed type.
+     */
+    private Object readValue(String key) {
+        if (!mPreferences.contains(key)) {
+            return null;
+        }
+        final Object previous = mValues.get(key);
+        try {
+            if (previous instanceof Set) {
+                return mPreferences.getStringSet(key, null);
+            } else if (previous instanceof Boolean) {
+                return mPreferences.getBoolean(key, false);
+            } else if (previous instanceof Long) {
+                return mPreferences.getLong(key, 0);
+            } else if (previous instanceof Float) {
+                return mPreferences.getFloat(key, 0);
+            }
+            return mPreferences.getString(key, null);
+        } catch (ClassCastException changedType) {
+            return mPreferences.getAll().get(key);
+        }
+    }
+}
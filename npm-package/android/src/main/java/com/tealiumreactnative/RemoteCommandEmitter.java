@@ -0,0 +1,370 @@
+package com.tealiumreactnative;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+import com.tealium.library.BuildConfig;
+
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Delivers remote command payloads to JS.
+ *
+ * By default every invocation is emitted as its own RemoteCommandEvent. Commands with a batch
+ * window are held instead, each command on its own, and a command's held invocations are emitted
+ * together as one RemoteCommandBatchEvent array, in invocation order, once the window of its first
+ * held invocation closes. A window of {@link #BATCH_PER_FRAME} holds invocations until the next
+ * frame.
+ *
+ * With filtering on, only commands that JS has subscribed to are emitted; the payloads of all
+ * others are dropped before they are converted.
+ *
+ * Until JS has attached its listener, and while the React instance is reloading or gone, payloads
+ * are held in a bounded queue instead and delivered in order once JS is ready again.
+ *
+ * Payloads waiting for a response are reported to {@link RemoteCommandResponses} when they are
+ * emitted, which starts their timeout over, or answered there if they are dropped instead. Held
+ * payloads whose invocation has already timed out are not emitted.
+ */
+final class RemoteCommandEmitter {
+
+    static final String EVENT_NAME = "RemoteCommandEvent";
+    static final String BATCH_EVENT_NAME = "RemoteCommandBatchEvent";
+    static final long BATCH_PER_FRAME = 0;
+    static final int DEFAULT_HOLD_CAPACITY = 256;
+
+    private static final class HeldPayload {
+        final boolean mBatched;
+        final JSONObject mPayload;
+
+        HeldPayload(boolean batched, JSONObject payload) {
+            mBatched = batched;
+            mPayload = payload;
+        }
+    }
+
+    /**
+     * One command's held invocations and the flush scheduled for them.
+     */
+    private final class Batch implements Runnable, Choreographer.FrameCallback {
+        final String mCommandID;
+        List<JSONObject> mPayloads = new ArrayList<>();
+        boolean mScheduled;
+
+        // posted to the main thread, where the Choreographer for the next frame lives
+        final Runnable mPostFrameCallback = new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(Batch.this);
+            }
+        };
+
+        Batch(String commandID) {
+            mCommandID = commandID;
+        }
+
+        @Override
+        public void run() {
+            flush(mCommandID);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            flush(mCommandID);
+        }
+    }
+
+    private final RemoteCommandResponses mResponses;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Long> mBatchWindows = new ConcurrentHashMap<>();
+    private final Set<String> mSubscribedCommands = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile boolean mFilteringEnabled;
+    private final Object mLock = new Object();
+    private final Map<String, Batch> mBatches = new HashMap<>();
+    private volatile ReactApplicationContext mReactContext;
+
+    // guards delivery, so held payloads always go out before newer ones
+    private final Object mDeliveryLock = new Object();
+    private final ArrayDeque<HeldPayload> mHeld = new ArrayDeque<>();
+    private int mHoldCapacity = DEFAULT_HOLD_CAPACITY;
+    private TrackingDispatcher.OverflowPolicy mHoldPolicy = TrackingDispatcher.OverflowPolicy.DROP_OLDEST;
+    private boolean mListenerAttached;
+    private long mHeldCount;
+    private long mDroppedCount;
+
+    RemoteCommandEmitter(RemoteCommandResponses responses) {
+        mResponses = responses;
+    }
+
+    void setReactContext(ReactApplicationContext reactContext) {
+        mReactContext = reactContext;
+    }
+
+    /**
+     * @param policy DROP_OLDEST or DROP_NEWEST; what to drop once capacity payloads are held
+     */
+    void configureHoldQueue(int capacity, TrackingDispatcher.OverflowPolicy policy) {
+        synchronized (mDeliveryLock) {
+            mHoldCapacity = capacity > 0 ? capacity : DEFAULT_HOLD_CAPACITY;
+            mHoldPolicy = policy;
+            while (mHeld.size() > mHoldCapacity) {
+                onDropped(mHeld.pollFirst().mPayload);
+            }
+        }
+    }
+
+    /**
+     * Called once JS has attached its listener; delivers everything held meanwhile.
+     */
+    void onListenerAttached() {
+        synchronized (mDeliveryLock) {
+            mListenerAttached = true;
+            deliverHeld();
+        }
+    }
+
+    /**
+     * Called when the React instance goes away; payloads are held until JS attaches again.
+     */
+    void onListenerDetached() {
+        synchronized (mDeliveryLock) {
+            mListenerAttached = false;
+        }
+    }
+
+    long getHeldCount() {
+        synchronized (mDeliveryLock) {
+            return mHeldCount;
+        }
+    }
+
+    long getDroppedCount() {
+        synchronized (mDeliveryLock) {
+            return mDroppedCount;
+        }
+    }
+
+    int getPendingDeliveryCount() {
+        synchronized (mDeliveryLock) {
+            return mHeld.size();
+        }
+    }
+
+    /**
+     * @param windowMillis how long to hold the command's invocations, {@link #BATCH_PER_FRAME} to
+     *                     hold them until the next frame, or a negative value to emit each at once
+     */
+    void setBatchWindow(String commandID, long windowMillis) {
+        if (windowMillis < 0) {
+            // anything still held for the command must go out before its next direct emit
+            if (mBatchWindows.remove(commandID) != null) {
+                flush(commandID);
+            }
+        } else {
+            mBatchWindows.put(commandID, windowMillis);
+        }
+    }
+
+    void setSubscribed(String commandID, boolean subscribed) {
+        if (subscribed) {
+            mSubscribedCommands.add(commandID);
+        } else {
+            mSubscribedCommands.remove(commandID);
+        }
+    }
+
+    void setFilteringEnabled(boolean enabled) {
+        mFilteringEnabled = enabled;
+    }
+
+    boolean isObserved(String commandID) {
+        return !mFilteringEnabled || mSubscribedCommands.contains(commandID);
+    }
+
+    void emit(String commandID, JSONObject payload) {
+        if (!isObserved(commandID)) {
+            // unsubscribed since the invocation was tracked
+            answerDropped(payload);
+            return;
+        }
+
+        final Long window = mBatchWindows.get(commandID);
+        if (window == null) {
+            deliver(false, Collections.singletonList(payload));
+            return;
+        }
+
+        final Batch batch;
+        synchronized (mLock) {
+            Batch existing = mBatches.get(commandID);
+            if (existing == null) {
+                existing = new Batch(commandID);
+                mBatches.put(commandID, existing);
+            }
+            batch = existing;
+            batch.mPayloads.add(payload);
+            if (batch.mScheduled) {
+                return;
+            }
+            batch.mScheduled = true;
+        }
+        if (window == BATCH_PER_FRAME) {
+            mMainHandler.post(batch.mPostFrameCallback);
+        } else {
+            mMainHandler.postDelayed(batch, window);
+        }
+    }
+
+    /**
+     * Emits everything held so far for the command as one batch event.
+     */
+    void flush(String commandID) {
+        final List<JSONObject> pending;
+        synchronized (mLock) {
+            final Batch batch = mBatches.get(commandID);
+            if (batch == null) {
+                return;
+            }
+            mMainHandler.removeCallbacks(batch);
+            batch.mScheduled = false;
+            if (batch.mPayloads.isEmpty()) {
+                return;
+            }
+            pending = batch.mPayloads;
+            batch.mPayloads = new ArrayList<>();
+        }
+
+        deliver(true, pending);
+    }
+
+    private void deliver(boolean batched, List<JSONObject> payloads) {
+        synchronized (mDeliveryLock) {
+            if (!canDeliver()) {
+                for (JSONObject payload : payloads) {
+                    hold(new HeldPayload(batched, payload));
+                }
+                return;
+            }
+            deliverHeld();
+            send(batched, payloads);
+        }
+    }
+
+    private boolean canDeliver() {
+        final ReactApplicationContext reactContext = mReactContext;
+        return mListenerAttached && reactContext != null && reactContext.hasActiveCatalystInstance();
+    }
+
+    private void hold(HeldPayload held) {
+        if (mHeld.size() >= mHoldCapacity) {
+            if (mHoldPolicy != TrackingDispatcher.OverflowPolicy.DROP_OLDEST) {
+                onDropped(held.mPayload);
+                return;
+            }
+            onDropped(mHeld.pollFirst().mPayload);
+        }
+        mHeld.addLast(held);
+        mHeldCount++;
+    }
+
+    /**
+     * Sends held payloads in order, keeping runs of batched payloads together as one batch event.
+     */
+    private void deliverHeld() {
+        if (mHeld.isEmpty() || !canDeliver()) {
+            return;
+        }
+        Log.d(BuildConfig.TAG, "Delivering " + mHeld.size() + " held remote command payloads");
+
+        List<JSONObject> batch = new ArrayList<>();
+        HeldPayload held;
+        while ((held = mHeld.pollFirst()) != null) {
+            if (held.mBatched) {
+                batch.add(held.mPayload);
+                continue;
+            }
+            if (!batch.isEmpty()) {
+                send(true, batch);
+                batch = new ArrayList<>();
+            }
+            send(false, Collections.singletonList(held.mPayload));
+        }
+        if (!batch.isEmpty()) {
+            send(true, batch);
+        }
+    }
+
+    private void onDropped(JSONObject payload) {
+        mDroppedCount++;
+        answerDropped(payload);
+    }
+
+    private void answerDropped(JSONObject payload) {
+        final String correlationId = payload.optString(RemoteCommandResponses.CORRELATION_ID, null);
+        if (correlationId != null) {
+            mResponses.onDropped(correlationId);
+        }
+    }
+
+    private void send(boolean batched, List<JSONObject> payloads) {
+        payloads = withoutAnswered(payloads);
+        if (payloads.isEmpty()) {
+            return;
+        }
+        // before the emit, so JS can't complete an invocation whose round trip hasn't started
+        for (JSONObject payload : payloads) {
+            final String correlationId = payload.optString(RemoteCommandResponses.CORRELATION_ID, null);
+            if (correlationId != null) {
+                mResponses.onDelivered(correlationId);
+            }
+        }
+
+        if (!batched) {
+            emitToJs(EVENT_NAME, TealiumModule.convertJsonToMap(payloads.get(0)));
+        } else {
+            final WritableArray batch = Arguments.createArray();
+            for (JSONObject payload : payloads) {
+                batch.pushMap(TealiumModule.convertJsonToMap(payload));
+            }
+            emitToJs(BATCH_EVENT_NAME, batch);
+        }
+    }
+
+    /**
+     * Leaves out payloads whose invocation was answered while they were held.
+     */
+    private List<JSONObject> withoutAnswered(List<JSONObject> payloads) {
+        List<JSONObject> pending = payloads;
+        for (int i = 0; i < payloads.size(); i++) {
+            final String correlationId = payloads.get(i).optString(RemoteCommandResponses.CORRELATION_ID, null);
+            final boolean answered = correlationId != null && !mResponses.isPending(correlationId);
+            if (answered && pending == payloads) {
+                pending = new ArrayList<>(payloads.subList(0, i));
+            } else if (!answered && pending != payloads) {
+                pending.add(payloads.get(i));
+            }
+        }
+        return pending;
+    }
+
+    private void emitToJs(String eventName, Object params) {
+        mReactContext
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit(eventName, params);
+    }
+}
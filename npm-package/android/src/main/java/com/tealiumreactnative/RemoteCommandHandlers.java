@@ -0,0 +1,124 @@
+package com.tealiumreactnative;
+
+import android.util.Log;
+
+import com.tealium.internal.tagbridge.RemoteCommand;
+import com.tealium.library.BuildConfig;
+import com.tealium.library.Tealium;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Registry of native remote command handlers.
+ *
+ * Every registered handler is added as a remote command to every Tealium instance this package
+ * creates or attaches to, whether the handler or the instance comes first.
+ */
+final class RemoteCommandHandlers {
+
+    private static final int STATUS_EXCEPTION_THROWN = 555;
+
+    private static final class Registration {
+        final String mDescription;
+        final NativeRemoteCommandHandler mHandler;
+        // instance name -> the command added to that instance
+        final Map<String, RemoteCommand> mCommands = new HashMap<>();
+
+        Registration(String description, NativeRemoteCommandHandler handler) {
+            mDescription = description;
+            mHandler = handler;
+        }
+    }
+
+    private static final Map<String, Registration> mRegistrations = new HashMap<>();
+    private static final Map<String, Tealium> mInstances = new HashMap<>();
+    private static ExecutorService mExecutor;
+
+    private RemoteCommandHandlers() {
+    }
+
+    static synchronized void register(String commandID, String description, NativeRemoteCommandHandler handler) {
+        final Registration registration = new Registration(description, handler);
+        final Registration previous = mRegistrations.put(commandID, registration);
+        for (Map.Entry<String, Tealium> instance : mInstances.entrySet()) {
+            if (previous != null && previous.mCommands.containsKey(instance.getKey())) {
+                instance.getValue().removeRemoteCommand(previous.mCommands.get(instance.getKey()));
+            }
+            addCommand(instance.getKey(), instance.getValue(), commandID, registration);
+        }
+    }
+
+    static synchronized boolean isRegistered(String commandID) {
+        return mRegistrations.containsKey(commandID);
+    }
+
+    /**
+     * Adds every registered handler to the instance, once per instance.
+     */
+    static synchronized void attach(String instanceName, Tealium instance) {
+        if (instance == null || mInstances.get(instanceName) == instance) {
+            return;
+        }
+        mInstances.put(instanceName, instance);
+        for (Map.Entry<String, Registration> registration : mRegistrations.entrySet()) {
+            addCommand(instanceName, instance, registration.getKey(), registration.getValue());
+        }
+    }
+
+    static synchronized void detach(String instanceName) {
+        mInstances.remove(instanceName);
+        for (Registration registration : mRegistrations.values()) {
+            registration.mCommands.remove(instanceName);
+        }
+    }
+
+    private static void addCommand(String instanceName, Tealium instance, String commandID, Registration registration) {
+        final RemoteCommand command = createCommand(instanceName, commandID, registration);
+        instance.addRemoteCommand(command);
+        registration.mCommands.put(instanceName, command);
+    }
+
+    private static RemoteCommand createCommand(final String instanceName,
+                                               final String commandID,
+                                               final Registration registration) {
+        return new RemoteCommand(commandID, registration.mDescription) {
+            @Override
+            protected void onInvoke(final Response response) {
+                getExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            registration.mHandler.onInvoke(instanceName, response);
+                        } catch (Throwable t) {
+                            Log.e(BuildConfig.TAG, "Native remote command `" + commandID + "` failed", t);
+                            response.setStatus(STATUS_EXCEPTION_THROWN).setBody(String.valueOf(t.getMessage())).send();
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public String toString() {
+                return commandID;
+            }
+        };
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (mExecutor == null) {
+            mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "tealium-remote-commands");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mExecutor;
+    }
+}
@@ -0,0 +1,59 @@
+package com.tealiumreactnative;
+
+import com.tealium.internal.tagbridge.RemoteCommand;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The remote commands JS has added, per instance name and command ID, so the same command ID can
+ * be added to several instances and removed from each independently.
+ *
+ * Safe to use from any thread.
+ */
+final class RemoteCommandRegistry {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, RemoteCommand>> mCommands = new ConcurrentHashMap<>();
+
+    /**
+     * @return the command previously added under the same ID for the instance, or null
+     */
+    RemoteCommand put(String instanceName, String commandID, RemoteCommand command) {
+        ConcurrentMap<String, RemoteCommand> commands = mCommands.get(instanceName);
+        if (commands == null) {
+            final ConcurrentMap<String, RemoteCommand> created = new ConcurrentHashMap<>();
+            commands = mCommands.putIfAbsent(instanceName, created);
+            if (commands == null) {
+                commands = created;
+            }
+        }
+        return commands.put(commandID, command);
+    }
+
+    RemoteCommand remove(String instanceName, String commandID) {
+        final ConcurrentMap<String, RemoteCommand> commands = mCommands.get(instanceName);
+        return commands != null ? commands.remove(commandID) : null;
+    }
+
+    /**
+     * Forgets every command of the instance, returning them.
+     */
+    Collection<RemoteCommand> removeAll(String instanceName) {
+        final ConcurrentMap<String, RemoteCommand> commands = mCommands.remove(instanceName);
+        return commands != null ? commands.values() : Collections.<RemoteCommand>emptyList();
+    }
+
+    List<String> getCommandIDs(String instanceName) {
+        final ConcurrentMap<String, RemoteCommand> commands = mCommands.get(instanceName);
+        if (commands == null) {
+            return Collections.emptyList();
+        }
+        final List<String> ids = new ArrayList<>(commands.keySet());
+        Collections.sort(ids);
+        return ids;
+    }
+}
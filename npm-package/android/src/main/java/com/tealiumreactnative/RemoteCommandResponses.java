@@ -0,0 +1,210 @@
+package com.tealiumreactnative;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.tealium.internal.tagbridge.RemoteCommand;
+import com.tealium.library.BuildConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remote command invocations waiting for JS to complete them.
+ *
+ * Only commands given a timeout wait for a response. Each waiting invocation gets a correlation ID
+ * that JS passes back to complete it. The table is bounded: once it is full, new invocations are
+ * answered straight away with {@link #STATUS_BUSY} instead of piling up behind a slow JS thread.
+ * Invocations JS doesn't complete in time are answered with {@link #STATUS_TIMEOUT}. The timeout
+ * starts when the invocation is tracked, so one held while JS isn't ready still times out and
+ * frees its slot, and starts over when the payload is emitted to JS, so JS always gets the full
+ * timeout to answer. The round trip time starts at the emit.
+ */
+final class RemoteCommandResponses {
+
+    static final int DEFAULT_CAPACITY = 256;
+    static final int STATUS_TIMEOUT = 408;
+    static final int STATUS_BUSY = 503;
+    static final String CORRELATION_ID = "correlation_id";
+
+    private static final class InFlight implements Runnable {
+        final String mCorrelationId;
+        final RemoteCommand.Response mResponse;
+        final long mTimeoutMillis;
+        volatile long mStartNanos;
+        private final RemoteCommandResponses mOwner;
+
+        InFlight(RemoteCommandResponses owner, String correlationId, RemoteCommand.Response response, long timeoutMillis) {
+            mOwner = owner;
+            mCorrelationId = correlationId;
+            mResponse = response;
+            mTimeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run() {
+            mOwner.timeOut(this);
+        }
+    }
+
+    private final Handler mTimeoutHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Long> mTimeouts = new ConcurrentHashMap<>();
+    private final Map<String, InFlight> mInFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger mInFlightCount = new AtomicInteger();
+    private final AtomicLong mNextId = new AtomicLong();
+    private volatile int mCapacity = DEFAULT_CAPACITY;
+
+    private final AtomicLong mCompletedCount = new AtomicLong();
+    private final AtomicLong mTimedCount = new AtomicLong();
+    private final AtomicLong mTotalLatencyNanos = new AtomicLong();
+    private final AtomicLong mMaxLatencyNanos = new AtomicLong();
+    private final AtomicLong mTimedOutCount = new AtomicLong();
+    private final AtomicLong mRejectedCount = new AtomicLong();
+
+    /**
+     * @param timeoutMillis how long the command's invocations wait for JS; 0 or less stops waiting
+     */
+    void setTimeout(String commandID, long timeoutMillis) {
+        if (timeoutMillis > 0) {
+            mTimeouts.put(commandID, timeoutMillis);
+        } else {
+            mTimeouts.remove(commandID);
+        }
+    }
+
+    void setCapacity(int capacity) {
+        mCapacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+    }
+
+    boolean awaitsResponse(String commandID) {
+        return mTimeouts.containsKey(commandID);
+    }
+
+    /**
+     * Starts waiting for JS to complete the invocation, and starts its timeout.
+     *
+     * @return the correlation ID, or null if the table was full and the invocation was answered
+     */
+    String track(String commandID, RemoteCommand.Response response) {
+        final Long timeout = mTimeouts.get(commandID);
+        if (timeout == null) {
+            return null;
+        }
+        if (mInFlightCount.incrementAndGet() > mCapacity) {
+            mInFlightCount.decrementAndGet();
+            mRejectedCount.incrementAndGet();
+            response.setStatus(STATUS_BUSY).setBody("Too many remote commands awaiting a response").send();
+            return null;
+        }
+
+        final InFlight inFlight = new InFlight(this, commandID + ":" + mNextId.incrementAndGet(), response, timeout);
+        mInFlight.put(inFlight.mCorrelationId, inFlight);
+        mTimeoutHandler.postDelayed(inFlight, inFlight.mTimeoutMillis);
+        return inFlight.mCorrelationId;
+    }
+
+    /**
+     * @return false if the invocation was already answered, for example because it timed out
+     * while its payload was held
+     */
+    boolean isPending(String correlationId) {
+        return mInFlight.containsKey(correlationId);
+    }
+
+    /**
+     * Starts the invocation's timeout over, now that its payload has been emitted to JS.
+     */
+    void onDelivered(String correlationId) {
+        final InFlight inFlight = mInFlight.get(correlationId);
+        if (inFlight != null) {
+            inFlight.mStartNanos = System.nanoTime();
+            mTimeoutHandler.removeCallbacks(inFlight);
+            mTimeoutHandler.postDelayed(inFlight, inFlight.mTimeoutMillis);
+        }
+    }
+
+    /**
+     * Answers an invocation whose payload was dropped before it reached JS.
+     */
+    void onDropped(String correlationId) {
+        final InFlight inFlight = mInFlight.remove(correlationId);
+        if (inFlight == null) {
+            return;
+        }
+        mInFlightCount.decrementAndGet();
+        mRejectedCount.incrementAndGet();
+        inFlight.mResponse.setStatus(STATUS_BUSY).setBody("Dropped before it was delivered to JS").send();
+    }
+
+    /**
+     * @return false if the invocation is unknown, already completed or timed out
+     */
+    boolean complete(String correlationId, int status, String body) {
+        final InFlight inFlight = correlationId != null ? mInFlight.remove(correlationId) : null;
+        if (inFlight == null) {
+            return false;
+        }
+        mInFlightCount.decrementAndGet();
+        mTimeoutHandler.removeCallbacks(inFlight);
+
+        mCompletedCount.incrementAndGet();
+        final long startNanos = inFlight.mStartNanos;
+        // completed without being delivered, such as with an ID guessed in JS: no round trip to time
+        if (startNanos != 0) {
+            final long latency = System.nanoTime() - startNanos;
+            mTimedCount.incrementAndGet();
+            mTotalLatencyNanos.addAndGet(latency);
+            long max = mMaxLatencyNanos.get();
+            while (latency > max && !mMaxLatencyNanos.compareAndSet(max, latency)) {
+                max = mMaxLatencyNanos.get();
+            }
+        }
+
+        inFlight.mResponse.setStatus(status).setBody(body).send();
+        return true;
+    }
+
+    private void timeOut(InFlight inFlight) {
+        if (mInFlight.remove(inFlight.mCorrelationId) == null) {
+            return;
+        }
+        mInFlightCount.decrementAndGet();
+        mTimedOutCount.incrementAndGet();
+        Log.w(BuildConfig.TAG, "Remote command " + inFlight.mCorrelationId + " timed out waiting for JS");
+        inFlight.mResponse.setStatus(STATUS_TIMEOUT).setBody("Timed out waiting for a response").send();
+    }
+
+    int getInFlightCount() {
+        return mInFlightCount.get();
+    }
+
+    long getCompletedCount() {
+        return mCompletedCount.get();
+    }
+
+    /**
+     * @return how many completions were timed; the round trip time is averaged over these
+     */
+    long getTimedCount() {
+        return mTimedCount.get();
+    }
+
+    long getTotalLatencyNanos() {
+        return mTotalLatencyNanos.get();
+    }
+
+    long getMaxLatencyNanos() {
+        return mMaxLatencyNanos.get();
+    }
+
+    long getTimedOutCount() {
+        return mTimedOutCount.get();
+    }
+
+    long getRejectedCount() {
+        return mRejectedCount.get();
+    }
+}
@@ -1,28 +1,37 @@
 package com.tealiumreactnative;
 
 import android.app.Application;
+import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
+import android.view.Choreographer;
+import android.webkit.WebView;
 
-import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Callback;
 import com.facebook.react.bridge.LifecycleEventListener;
+import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
-import com.facebook.react.bridge.ReadableMapKeySetIterator;
 import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.WritableArray;
 import com.tealium.library.BuildConfig;
 import com.tealium.library.ConsentManager;
 import com.tealium.library.Tealium;
+import com.tealium.library.UserConsentPreferences;
+import com.tealium.internal.data.PublishSettings;
+import com.tealium.internal.listeners.PublishSettingsUpdateListener;
+import com.tealium.internal.listeners.UserConsentPreferencesUpdateListener;
+import com.tealium.internal.listeners.WebViewLoadedListener;
 import com.tealium.lifecycle.LifeCycle;
 import com.tealium.internal.tagbridge.RemoteCommand;
-import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.Arguments;
 
@@ -30,12 +39,20 @@ import org.json.JSONObject;
 import org.json.JSONArray;
 import org.json.JSONException;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -46,23 +63,51 @@ public class TealiumModule extends ReactContextBaseJavaModule {
 
     private static String mTealiumInstanceName;
     private static boolean mIsLifecycleAutotracking = false;
-    private boolean mDidTrackInitialLaunch = false;
+    private static volatile long mLaunchTimeoutMillis = LaunchTrigger.DEFAULT_TIMEOUT_MILLIS;
     private static ReactApplicationContext mReactContext;
-    private static String mRemoteCommandEvent = "RemoteCommandEvent";
-    private static Map<String, RemoteCommand> mRemoteCommandsMap = new HashMap<>();
+    private static final RemoteCommandRegistry mRemoteCommands = new RemoteCommandRegistry();
+    private static final RemoteCommandResponses mRemoteCommandResponses = new RemoteCommandResponses();
+    private static final RemoteCommandEmitter mRemoteCommandEmitter = new RemoteCommandEmitter(mRemoteCommandResponses);
+    private static volatile TrackingDispatcher mDispatcher;
+    private static volatile Handler mLifecycleHandler;
+    private static final InstanceHandles mInstanceHandles = new InstanceHandles();
+    private static final Map<Tealium, MappedPersistentStore> mMappedPersistentStores = new IdentityHashMap<>();
+    // instances whose persistent data backend has been restored, with their names
+    private static final Map<Tealium, String> mRestoredPersistentBackends = new IdentityHashMap<>();
+    private static final Map<Tealium, VolatileDataSnapshot> mVolatileDataSnapshots = new IdentityHashMap<>();
+    private static final Map<Tealium, VolatileDataExpiry> mVolatileDataExpiries = new IdentityHashMap<>();
+    private static final Map<Tealium, ConsentGate> mConsentGates = new IdentityHashMap<>();
+    private static final Map<SharedPreferences, PersistentDataCache> mPersistentDataCaches = new IdentityHashMap<>();
+    private static final Map<String, PendingTaskBuffer<InstanceTask>> mPendingTasks = new ConcurrentHashMap<>();
+    private static final PayloadConverter mPayloadConverter = new PayloadConverter();
+    private static final JsonConverter mJsonConverter = new JsonConverter();
+    private static final String ERROR_INVALID_CONFIG = "E_INVALID_CONFIG";
+    private static final String ERROR_NO_INSTANCE = "E_NO_INSTANCE";
+    private static final String ERROR_INITIALIZATION_FAILED = "E_INITIALIZATION_FAILED";
+    private static final String PERSISTENT_BACKEND_SHARED_PREFERENCES = "sharedPreferences";
+    private static final String PERSISTENT_BACKEND_MAPPED_FILE = "mappedFile";
+    private static final String MAPPED_STORE_DIRECTORY = "tealium-react-native";
+    private static final String MODULE_PREFERENCES = "tealium.reactnative";
+    private static final String PERSISTENT_BACKEND_PREFERENCE = "persistent_backend.";
+    private static final String PERSISTENT_TYPE_PREFERENCES = "tealium.reactnative.persistent_types.";
+    private static final String PERSISTENT_TYPE_DOUBLE = "double";
+    private static final String PERSISTENT_TYPE_MAP = "map";
+    private static final String CONSENT_GATE_DROP = "drop";
+    private static final long PENDING_TASK_MAX_AGE_MILLIS = 60_000;
+    private static final String LIFECYCLE_LAUNCH_LATENCY = "lifecycle_launch_latency_ms";
+    private static final Map<String, Object> AUTOTRACKED_DATA = Collections.<String, Object>singletonMap("autotracked", "true");
+    private static final String BATCH_TYPE_EVENT = "event";
+    private static final String BATCH_TYPE_VIEW = "view";
 
 
     public TealiumModule(ReactApplicationContext context) {
         super(context);
         mReactContext = context;
-    }
-
-    private void sendEvent(ReactApplicationContext reactContext,
-                           String eventName,
-                           @Nullable WritableMap params) {
-        reactContext
-                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit(eventName, params);
+        mRemoteCommandEmitter.setReactContext(context);
+        AppStartMetrics.onModuleCreated();
+        if (mTealiumInstanceName == null) {
+            mTealiumInstanceName = TealiumReactNative.getDefaultInstanceName();
+        }
     }
 
     @Override
@@ -70,6 +115,12 @@ public class TealiumModule extends ReactContextBaseJavaModule {
         return "TealiumModule";
     }
 
+    @Override
+    public void onCatalystInstanceDestroy() {
+        super.onCatalystInstanceDestroy();
+        mRemoteCommandEmitter.onListenerDetached();
+    }
+
     @ReactMethod
     public void initialize(String account,
                            String profile,
@@ -79,24 +130,14 @@ public class TealiumModule extends ReactContextBaseJavaModule {
                            String instance,
                            boolean isLifecycleEnabled) {
 
+        AppStartMetrics.onInitialize();
         if (account == null || profile == null || environment == null) {
             throw new IllegalArgumentException("Account, profile, and environment parameters must be provided and non-null");
         }
 
-        final Tealium.Config config = Tealium.Config.create(getApplication(), account, profile, environment);
-        if (androidDatasource != null) {
-            config.setDatasourceId(androidDatasource);
-        }
-
         mTealiumInstanceName = instance;
-        if (isLifecycleEnabled) {
-            final boolean isAutoTracking = false;
-            LifeCycle.setupInstance(mTealiumInstanceName, config, isAutoTracking);
-            mIsLifecycleAutotracking = isLifecycleEnabled;
-            getReactApplicationContext().addLifecycleEventListener(createLifecycleEventListener(mTealiumInstanceName));
-        }
-
-        Tealium.createInstance(instance, config);
+        createTealiumInstance(account, profile, environment, androidDatasource, instance, isLifecycleEnabled,
+                null, null, true, false);
     }
 
     @ReactMethod
@@ -108,25 +149,14 @@ public class TealiumModule extends ReactContextBaseJavaModule {
                                              String instance,
                                              boolean isLifecycleEnabled) {
 
+        AppStartMetrics.onInitialize();
         if (account == null || profile == null || environment == null) {
             throw new IllegalArgumentException("Account, profile, and environment parameters must be provided and non-null");
         }
 
-        final Tealium.Config config = Tealium.Config.create(getApplication(), account, profile, environment);
-        if (androidDatasource != null) {
-            config.setDatasourceId(androidDatasource);
-        }
-        config.enableConsentManager(mTealiumInstanceName);
-
         mTealiumInstanceName = instance;
-        if (isLifecycleEnabled) {
-            final boolean isAutoTracking = false;
-            LifeCycle.setupInstance(mTealiumInstanceName, config, isAutoTracking);
-            mIsLifecycleAutotracking = isLifecycleEnabled;
-            getReactApplicationContext().addLifecycleEventListener(createLifecycleEventListener(mTealiumInstanceName));
-        }
-
-        Tealium.createInstance(instance, config);
+        createTealiumInstance(account, profile, environment, androidDatasource, instance, isLifecycleEnabled,
+                null, null, true, true);
     }
 
     @ReactMethod
@@ -142,10 +172,94 @@ public class TealiumModule extends ReactContextBaseJavaModule {
                                  boolean enableCollectUrl,
                                  boolean enableConsentManager) {
 
+        AppStartMetrics.onInitialize();
         if (account == null || profile == null || environment == null) {
             throw new IllegalArgumentException("Account, profile, and environment parameters must be provided and non-null");
         }
 
+        createTealiumInstance(account, profile, environment, androidDatasource, instance, isLifecycleEnabled,
+                overridePublishSettingsUrl, overrideTagManagementUrl, enableCollectUrl, enableConsentManager);
+    }
+
+    /**
+     * Same options as initializeCustom, but the config is built and the instance created on the
+     * dispatcher thread. Calls made meanwhile are buffered and replayed once the instance exists.
+     * The promise resolves with the time spent waiting in the queue and creating the instance.
+     */
+    @ReactMethod
+    public void initializeAsync(final String account,
+                                final String profile,
+                                final String environment,
+                                String iosDatasource,
+                                final String androidDatasource,
+                                final String instance,
+                                final boolean isLifecycleEnabled,
+                                final String overridePublishSettingsUrl,
+                                final String overrideTagManagementUrl,
+                                final boolean enableCollectUrl,
+                                final boolean enableConsentManager,
+                                final Promise promise) {
+
+        AppStartMetrics.onInitialize();
+        if (account == null || profile == null || environment == null) {
+            promise.reject(ERROR_INVALID_CONFIG, "Account, profile, and environment parameters must be provided and non-null");
+            return;
+        }
+
+        mTealiumInstanceName = instance;
+        final long enqueuedAt = SystemClock.elapsedRealtime();
+        getDispatcher().enqueue(new TrackingDispatcher.Task(false) {
+            @Override
+            public void run() {
+                final long startedAt = SystemClock.elapsedRealtime();
+                try {
+                    createTealiumInstance(account, profile, environment, androidDatasource, instance, isLifecycleEnabled,
+                            overridePublishSettingsUrl, overrideTagManagementUrl, enableCollectUrl, enableConsentManager);
+                } catch (Exception e) {
+                    promise.reject(ERROR_INITIALIZATION_FAILED, "Tealium initialization failed for instance name: " + instance, e);
+                    return;
+                }
+
+                WritableMap result = Arguments.createMap();
+                result.putString("instanceName", instance);
+                result.putInt("handle", mInstanceHandles.getHandle(instance));
+                result.putDouble("queueTime", startedAt - enqueuedAt);
+                result.putDouble("initializationTime", SystemClock.elapsedRealtime() - startedAt);
+                promise.resolve(result);
+            }
+        });
+    }
+
+    private void createTealiumInstance(String account,
+                                       String profile,
+                                       String environment,
+                                       String androidDatasource,
+                                       String instance,
+                                       boolean isLifecycleEnabled,
+                                       String overridePublishSettingsUrl,
+                                       String overrideTagManagementUrl,
+                                       boolean enableCollectUrl,
+                                       boolean enableConsentManager) {
+
+        if (TealiumReactNative.isBootstrapped(instance)) {
+            Log.d(BuildConfig.TAG, "Attaching to natively bootstrapped Tealium instance: " + instance);
+            if (isLifecycleEnabled) {
+                if (TealiumReactNative.isLifecycleBootstrapped(instance)) {
+                    final LaunchTrigger launch = enableLifecycleTracking(instance);
+                    launch.onInstanceCreated();
+                    launch.onInstanceReady();
+                } else {
+                    Log.w(BuildConfig.TAG, "Lifecycle was not enabled when bootstrapping instance: " + instance);
+                }
+            }
+            replayPendingTasks(instance);
+            if (mInstanceHandles.get(instance) == null) {
+                mInstanceHandles.register(instance, Tealium.getInstance(instance));
+            }
+            RemoteCommandHandlers.attach(instance, Tealium.getInstance(instance));
+            return;
+        }
+
         final Tealium.Config config = Tealium.Config.create(getApplication(), account, profile, environment);
         if (androidDatasource != null) {
             config.setDatasourceId(androidDatasource);
@@ -161,15 +275,87 @@ public class TealiumModule extends ReactContextBaseJavaModule {
         }
         if (enableConsentManager) {
             config.enableConsentManager(instance);
+            config.getEventListeners().add(createConsentUpdateListener(instance));
         }
 
+        LaunchTrigger launch = null;
         if (isLifecycleEnabled) {
             final boolean isAutoTracking = false;
             LifeCycle.setupInstance(instance, config, isAutoTracking);
-            mIsLifecycleAutotracking = isLifecycleEnabled;
-            getReactApplicationContext().addLifecycleEventListener(createLifecycleEventListener(instance));
+            launch = enableLifecycleTracking(instance);
+            config.getEventListeners().add(createWebViewLoadedListener(launch));
+            config.getEventListeners().add(createPublishSettingsListener(launch));
+        }
+
+        final Tealium tealium = Tealium.createInstance(instance, config);
+        // queue the replay before a handle exists, so calls made through the handle come after it
+        replayPendingTasks(instance);
+        mInstanceHandles.register(instance, tealium);
+        RemoteCommandHandlers.attach(instance, tealium);
+        if (launch != null) {
+            launch.onInstanceCreated();
+            // without tag management no webview loads, so the instance is ready once created
+            final PublishSettings publishSettings = config.getPublishSettings();
+            if (publishSettings != null && !publishSettings.isTagManagementEnabled()) {
+                launch.onInstanceReady();
+            }
         }
-        Tealium.createInstance(instance, config);
+    }
+
+    private LaunchTrigger enableLifecycleTracking(final String instance) {
+        mIsLifecycleAutotracking = true;
+        final LaunchTrigger launch = new LaunchTrigger(getLifecycleHandler(), mLaunchTimeoutMillis) {
+            @Override
+            void onLaunch(long latencyMillis) {
+                final Map<String, Object> data = new HashMap<>(AppStartMetrics.withTimings(AUTOTRACKED_DATA));
+                data.put(LIFECYCLE_LAUNCH_LATENCY, latencyMillis);
+                getDispatcher().enqueue(new InstanceTask(instance, false) {
+                    @Override
+                    void run(Tealium tealium) {
+                        final LifeCycle lf = getLifeCycle(instance);
+                        if (mIsLifecycleAutotracking && lf != null) {
+                            lf.trackLaunchEvent(data);
+                        }
+                    }
+                });
+            }
+        };
+        getReactApplicationContext().addLifecycleEventListener(createLifecycleEventListener(instance, launch));
+        return launch;
+    }
+
+    private static WebViewLoadedListener createWebViewLoadedListener(final LaunchTrigger launch) {
+        return new WebViewLoadedListener() {
+            @Override
+            public void onWebViewLoad(WebView webView, boolean success) {
+                launch.onInstanceReady();
+            }
+        };
+    }
+
+    /**
+     * Marks the instance ready when fetched publish settings turn tag management off, since the
+     * webview the launch otherwise waits for never loads then.
+     */
+    private static PublishSettingsUpdateListener createPublishSettingsListener(final LaunchTrigger launch) {
+        return new PublishSettingsUpdateListener() {
+            @Override
+            public void onPublishSettingsUpdate(PublishSettings publishSettings) {
+                if (!publishSettings.isTagManagementEnabled()) {
+                    launch.onInstanceReady();
+                }
+            }
+        };
+    }
+
+    /**
+     * Sets the longest the autotracked launch event waits for a new instance to report ready, once
+     * the app is in the foreground and the instance is created. Applies to instances initialized
+     * afterwards.
+     */
+    @ReactMethod
+    public void setLaunchTimeout(double timeoutMillis) {
+        mLaunchTimeoutMillis = (long) timeoutMillis;
     }
 
     @ReactMethod
@@ -178,19 +364,35 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void trackEventForInstance(String instanceName, String eventName, ReadableMap data) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "TrackEvent attempted, but Tealium not enabled for instance name: " + instanceName);
+    public void trackEventForInstance(final String instanceName, final String eventName, final ReadableMap data) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, true) {
+            @Override
+            void run(Tealium instance) {
+                performTrackEvent(instance, eventName, data);
+            }
+        });
+    }
+
+    private void performTrackEvent(final Tealium instance, final String eventName, final ReadableMap data) {
+        final ConsentGate gate = getClosedConsentGate(instance);
+        if (gate != null) {
+            gate.hold(new TrackingDispatcher.Task(true) {
+                @Override
+                public void run() {
+                    performTrackEvent(instance, eventName, data);
+                }
+            });
             return;
         }
 
         if (data != null) {
-            Map<String, Object> mapData = convertMapsToJson(data.toHashMap());
-            instance.trackEvent(eventName, mapData);
+            Map<String, Object> mapData = mPayloadConverter.toPayload(data);
+            instance.trackEvent(eventName, withModuleData(instance, mapData));
         } else {
-            instance.trackEvent(eventName, null);
+            instance.trackEvent(eventName, withModuleData(instance, null));
         }
+        countVolatileDataTrack(instance, false);
+        AppStartMetrics.onTrack();
     }
 
     @ReactMethod
@@ -199,224 +401,1458 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void trackViewForInstance(String instanceName, String viewName, ReadableMap data) {
-        final Tealium instance = Tealium.getInstance(instanceName);
+    public void trackViewForInstance(final String instanceName, final String viewName, final ReadableMap data) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, true) {
+            @Override
+            void run(Tealium instance) {
+                performTrackView(instance, viewName, data);
+            }
+        });
+    }
 
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "TrackView attempted, but Tealium not enabled for instance name: " + instanceName);
+    private void performTrackView(final Tealium instance, final String viewName, final ReadableMap data) {
+        final ConsentGate gate = getClosedConsentGate(instance);
+        if (gate != null) {
+            gate.hold(new TrackingDispatcher.Task(true) {
+                @Override
+                public void run() {
+                    performTrackView(instance, viewName, data);
+                }
+            });
             return;
         }
 
         if (data != null) {
-            Map<String, Object> mapData = convertMapsToJson(data.toHashMap());
-            instance.trackView(viewName, mapData);
+            Map<String, Object> mapData = mPayloadConverter.toPayload(data);
+            instance.trackView(viewName, withModuleData(instance, mapData));
         } else {
-            instance.trackView(viewName, null);
+            instance.trackView(viewName, withModuleData(instance, null));
+        }
+        countVolatileDataTrack(instance, true);
+        AppStartMetrics.onTrack();
+    }
+
+    @ReactMethod
+    public void trackEventsBatch(String instanceName, ReadableArray events) {
+        trackBatchForInstance(instanceName, events, BATCH_TYPE_EVENT);
+    }
+
+    @ReactMethod
+    public void trackViewsBatch(String instanceName, ReadableArray views) {
+        trackBatchForInstance(instanceName, views, BATCH_TYPE_VIEW);
+    }
+
+    /**
+     * Tracks every {type, name, data} entry of the batch, in order, against a single instance lookup.
+     * Entries without a type fall back to defaultType; a null instanceName targets the default instance.
+     */
+    private void trackBatchForInstance(String instanceName, final ReadableArray entries, final String defaultType) {
+        final String batchInstanceName = instanceName != null ? instanceName : mTealiumInstanceName;
+        getDispatcher().enqueue(new InstanceTask(batchInstanceName, true) {
+            @Override
+            void run(Tealium instance) {
+                performTrackBatch(instance, entries, defaultType);
+            }
+        });
+    }
+
+    private void performTrackBatch(final Tealium instance, final ReadableArray entries, final String defaultType) {
+        if (entries == null) {
+            return;
+        }
+        final ConsentGate gate = getClosedConsentGate(instance);
+        if (gate != null) {
+            gate.hold(new TrackingDispatcher.Task(true) {
+                @Override
+                public void run() {
+                    performTrackBatch(instance, entries, defaultType);
+                }
+            });
+            return;
+        }
+
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.getType(i) != ReadableType.Map) {
+                Log.e(BuildConfig.TAG, "Invalid batch entry at index " + i + ". Use objects of {type, name, data}");
+                continue;
+            }
+
+            ReadableMap entry = entries.getMap(i);
+            String type = entry.hasKey("type") && entry.getType("type") == ReadableType.String
+                    ? entry.getString("type")
+                    : defaultType;
+            String name = entry.hasKey("name") && entry.getType("name") == ReadableType.String
+                    ? entry.getString("name")
+                    : null;
+            ReadableMap data = entry.hasKey("data") && entry.getType("data") == ReadableType.Map
+                    ? entry.getMap("data")
+                    : null;
+
+            Map<String, Object> mapData = withModuleData(instance,
+                    data != null ? mPayloadConverter.toPayload(data) : null);
+            final boolean isView = BATCH_TYPE_VIEW.equals(type);
+            if (isView) {
+                instance.trackView(name, mapData);
+            } else {
+                instance.trackEvent(name, mapData);
+            }
+            countVolatileDataTrack(instance, isView);
+        }
+        AppStartMetrics.onTrack();
+    }
+
+    @ReactMethod
+    public void configureTrackingQueue(int capacity, String overflowPolicy) {
+        TrackingDispatcher.OverflowPolicy policy = TrackingDispatcher.OverflowPolicy.fromString(overflowPolicy);
+        if (policy == null) {
+            Log.e(BuildConfig.TAG, "Invalid overflow policy: " + overflowPolicy + ". Use dropOldest, dropNewest or block");
+            return;
+        }
+
+        synchronized (TealiumModule.class) {
+            if (mDispatcher == null) {
+                mDispatcher = new TrackingDispatcher(capacity > 0 ? capacity : TrackingDispatcher.DEFAULT_CAPACITY, policy);
+                return;
+            }
+            mDispatcher.setOverflowPolicy(policy);
+            if (capacity > 0 && capacity != mDispatcher.getCapacity()) {
+                Log.w(BuildConfig.TAG, "Tracking queue already started; capacity stays at " + mDispatcher.getCapacity());
+            }
+        }
+    }
+
+    private static Handler getLifecycleHandler() {
+        Handler handler = mLifecycleHandler;
+        if (handler == null) {
+            synchronized (TealiumModule.class) {
+                if (mLifecycleHandler == null) {
+                    final HandlerThread thread = new HandlerThread("TealiumReactNativeLifecycle",
+                            Process.THREAD_PRIORITY_BACKGROUND);
+                    thread.start();
+                    mLifecycleHandler = new Handler(thread.getLooper());
+                }
+                handler = mLifecycleHandler;
+            }
+        }
+        return handler;
+    }
+
+    private static TrackingDispatcher getDispatcher() {
+        TrackingDispatcher dispatcher = mDispatcher;
+        if (dispatcher == null) {
+            synchronized (TealiumModule.class) {
+                if (mDispatcher == null) {
+                    mDispatcher = new TrackingDispatcher(TrackingDispatcher.DEFAULT_CAPACITY,
+                            TrackingDispatcher.OverflowPolicy.DROP_OLDEST);
+                }
+                dispatcher = mDispatcher;
+            }
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Dispatcher work bound to a single Tealium instance. Until that instance exists, or while older
+     * work for it is still pending, the task is held in the instance's pending buffer and replayed in
+     * order once initialization completes.
+     */
+    private abstract static class InstanceTask extends TrackingDispatcher.Task {
+        private final int mHandle;
+        private String mInstanceName;
+        private Callback mCallback;
+        private Promise mPromise;
+
+        InstanceTask(String instanceName, boolean droppable) {
+            super(droppable);
+            mHandle = InstanceHandles.INVALID_HANDLE;
+            mInstanceName = instanceName;
+        }
+
+        /**
+         * A getter whose callback is invoked without a value if the task is dropped.
+         */
+        InstanceTask(String instanceName, Callback callback) {
+            this(instanceName, false);
+            mCallback = callback;
+        }
+
+        /**
+         * A call whose promise is rejected if the task is dropped.
+         */
+        InstanceTask(String instanceName, Promise promise) {
+            this(instanceName, false);
+            mPromise = promise;
+        }
+
+        InstanceTask(int handle, boolean droppable) {
+            super(droppable);
+            mHandle = handle;
+        }
+
+        abstract void run(Tealium instance);
+
+        /**
+         * Settles the task's callback or promise when it is dropped without running.
+         */
+        void onDropped(String reason) {
+            Log.w(BuildConfig.TAG, reason);
+            if (mCallback != null) {
+                mCallback.invoke();
+            }
+            if (mPromise != null) {
+                mPromise.reject(ERROR_NO_INSTANCE, reason);
+            }
+        }
+
+        @Override
+        public final void run() {
+            if (mHandle != InstanceHandles.INVALID_HANDLE) {
+                final InstanceHandles.Entry entry = mInstanceHandles.get(mHandle);
+                if (entry == null) {
+                    Log.e(BuildConfig.TAG, "Tealium call attempted with invalid or destroyed instance handle: " + mHandle);
+                    return;
+                }
+                // handles are registered after the replay of buffered calls is queued, so nothing
+                // for the instance can still be pending ahead of this task
+                restorePersistentDataBackend(entry.mInstanceName, entry.mTealium);
+                run(entry.mTealium);
+                return;
+            }
+
+            if (mInstanceName == null) {
+                Log.e(BuildConfig.TAG, "Tealium call attempted before any instance was initialized");
+                return;
+            }
+
+            final PendingTaskBuffer<InstanceTask> pending = mPendingTasks.get(mInstanceName);
+            final Tealium instance = getTealiumInstance(mInstanceName);
+            if (instance != null && (pending == null || pending.isEmpty())) {
+                restorePersistentDataBackend(mInstanceName, instance);
+                run(instance);
+            } else {
+                bufferPendingTask(this);
+            }
+        }
+    }
+
+    private static Tealium getTealiumInstance(String instanceName) {
+        final InstanceHandles.Entry entry = mInstanceHandles.get(instanceName);
+        return entry != null ? entry.mTealium : Tealium.getInstance(instanceName);
+    }
+
+    /**
+     * Returns the instance's consent manager, as cached in its handle entry, or null if the instance
+     * doesn't exist or has no consent manager.
+     */
+    private static ConsentManager getConsentManager(String instanceName, String operation) {
+        final InstanceHandles.Entry entry = mInstanceHandles.get(instanceName);
+        if (entry != null) {
+            return entry.mConsentManager;
+        }
+        final Tealium instance = Tealium.getInstance(instanceName);
+        if (instance == null) {
+            Log.e(BuildConfig.TAG, operation + " attempted, but Tealium not enabled for instance name: " + instanceName);
+            return null;
+        }
+        return instance.getConsentManager();
+    }
+
+    private static LifeCycle getLifeCycle(String instanceName) {
+        final InstanceHandles.Entry entry = mInstanceHandles.get(instanceName);
+        return entry != null && entry.mLifeCycle != null ? entry.mLifeCycle : LifeCycle.getInstance(instanceName);
+    }
+
+    private static void bufferPendingTask(InstanceTask task) {
+        PendingTaskBuffer<InstanceTask> pending = mPendingTasks.get(task.mInstanceName);
+        if (pending == null) {
+            Log.d(BuildConfig.TAG, "Tealium not yet enabled for instance name: " + task.mInstanceName + ", buffering calls until it is");
+            pending = new PendingTaskBuffer<>(PendingTaskBuffer.DEFAULT_CAPACITY);
+            mPendingTasks.put(task.mInstanceName, pending);
+        }
+
+        final boolean wasEmpty = pending.isEmpty();
+        final InstanceTask dropped = pending.add(task, SystemClock.elapsedRealtime());
+        if (dropped == task) {
+            dropped.onDropped("Pending call buffer full for instance name: " + task.mInstanceName + ", dropped call");
+        } else if (dropped != null) {
+            dropped.onDropped("Pending call buffer full for instance name: " + task.mInstanceName + ", dropped oldest track call");
+        }
+        if (wasEmpty && !pending.isEmpty()) {
+            scheduleExpirePendingTasks(task.mInstanceName);
+        }
+    }
+
+    /**
+     * Checks, once calls could have been buffered for {@link #PENDING_TASK_MAX_AGE_MILLIS}, whether
+     * the instance was ever created, and drops its buffered calls if not, so a misspelled or never
+     * initialized instance name doesn't keep them, and their callbacks, forever.
+     */
+    private static void scheduleExpirePendingTasks(final String instanceName) {
+        getLifecycleHandler().postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                getDispatcher().enqueue(new TrackingDispatcher.Task(false) {
+                    @Override
+                    public void run() {
+                        expirePendingTasks(instanceName);
+                    }
+                });
+            }
+        }, PENDING_TASK_MAX_AGE_MILLIS);
+    }
+
+    private static void expirePendingTasks(String instanceName) {
+        final PendingTaskBuffer<InstanceTask> pending = mPendingTasks.get(instanceName);
+        if (pending == null || getTealiumInstance(instanceName) != null
+                || !pending.isExpired(SystemClock.elapsedRealtime(), PENDING_TASK_MAX_AGE_MILLIS)) {
+            return;
+        }
+        mPendingTasks.remove(instanceName);
+        for (InstanceTask task : pending.clear()) {
+            task.onDropped("Pending call dropped; Tealium instance never created: " + instanceName);
+        }
+    }
+
+    /**
+     * Replays, on the dispatcher thread, everything buffered for the instance before it was created.
+     */
+    private static void replayPendingTasks(final String instanceName) {
+        getDispatcher().enqueue(new TrackingDispatcher.Task(false) {
+            @Override
+            public void run() {
+                final PendingTaskBuffer<InstanceTask> pending = mPendingTasks.get(instanceName);
+                final Tealium instance = getTealiumInstance(instanceName);
+                if (pending == null || instance == null) {
+                    return;
+                }
+
+                restorePersistentDataBackend(instanceName, instance);
+                InstanceTask task;
+                while ((task = pending.poll()) != null) {
+                    try {
+                        task.run(instance);
+                    } catch (Throwable t) {
+                        Log.e(BuildConfig.TAG, "Replaying pending call failed for instance name: " + instanceName, t);
+                    }
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getPendingCallStats(String instanceName, Callback callback) {
+        final PendingTaskBuffer<InstanceTask> pending = mPendingTasks.get(instanceName);
+        WritableMap stats = Arguments.createMap();
+        stats.putDouble("buffered", pending != null ? pending.getBufferedCount() : 0);
+        stats.putDouble("replayed", pending != null ? pending.getReplayedCount() : 0);
+        stats.putDouble("dropped", pending != null ? pending.getDroppedCount() : 0);
+        stats.putDouble("pending", pending != null ? pending.getPendingCount() : 0);
+        callback.invoke(stats);
+    }
+
+    /**
+     * Holds back the instance's track calls, before their data is converted, until the user has
+     * consented to every one of requiredCategories. While the user hasn't decided, track calls are
+     * queued, up to capacity, or dropped when undecidedPolicy is "drop". The queue is replayed once
+     * the user consents and discarded if they decline. A null instanceName gates the default instance.
+     */
+    @ReactMethod
+    public void setConsentGate(String instanceName, ReadableArray requiredCategories, String undecidedPolicy, final int capacity) {
+        final String[] categories = new String[requiredCategories.size()];
+        for (int i = 0; i < categories.length; i++) {
+            categories[i] = requiredCategories.getString(i);
+        }
+        final boolean queueUndecided = !CONSENT_GATE_DROP.equals(undecidedPolicy);
+        getDispatcher().enqueue(new InstanceTask(instanceName != null ? instanceName : mTealiumInstanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentManager consentManager = instance.getConsentManager();
+                if (consentManager == null) {
+                    Log.e(BuildConfig.TAG, "setConsentGate attempted, but the consent manager is not enabled for this instance");
+                    return;
+                }
+                final ConsentGate previous = mConsentGates.get(instance);
+                if (previous != null) {
+                    previous.discardPending();
+                }
+                final ConsentGate gate = new ConsentGate(ConsentGate.toCategoryBits(categories), queueUndecided, capacity);
+                gate.update(consentManager.getUserConsentStatus(), consentManager.getUserConsentCategories());
+                mConsentGates.put(instance, gate);
+            }
+        });
+    }
+
+    /**
+     * Stops gating the instance's track calls. Calls still queued are discarded, as the user never
+     * consented to them.
+     */
+    @ReactMethod
+    public void removeConsentGate(String instanceName) {
+        getDispatcher().enqueue(new InstanceTask(instanceName != null ? instanceName : mTealiumInstanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentGate gate = mConsentGates.remove(instance);
+                if (gate != null) {
+                    gate.discardPending();
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getConsentGateStats(String instanceName, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName != null ? instanceName : mTealiumInstanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentGate gate = mConsentGates.get(instance);
+                WritableMap stats = Arguments.createMap();
+                stats.putString("decision", gate != null ? gate.getDecision().name().toLowerCase(Locale.ROOT) : "none");
+                stats.putDouble("pending", gate != null ? gate.getPendingCount() : 0);
+                stats.putDouble("queued", gate != null ? gate.getQueuedCount() : 0);
+                stats.putDouble("released", gate != null ? gate.getReleasedCount() : 0);
+                stats.putDouble("discarded", gate != null ? gate.getDiscardedCount() : 0);
+                stats.putDouble("overflowed", gate != null ? gate.getOverflowCount() : 0);
+                callback.invoke(stats);
+            }
+        });
+    }
+
+    /**
+     * Returns the instance's consent gate if it is holding back track calls, otherwise null.
+     */
+    private static ConsentGate getClosedConsentGate(Tealium instance) {
+        if (mConsentGates.isEmpty()) {
+            return null;
+        }
+        final ConsentGate gate = mConsentGates.get(instance);
+        return gate != null && !gate.isOpen() ? gate : null;
+    }
+
+    /**
+     * Re-reads the user's decision into the instance's consent gate, on the dispatcher so track calls
+     * made before the change are still judged by the old decision.
+     */
+    private static void refreshConsentGate(String instanceName) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                updateConsentGate(instance);
+            }
+        });
+    }
+
+    private static void updateConsentGate(Tealium instance) {
+        final ConsentGate gate = mConsentGates.get(instance);
+        final ConsentManager consentManager = instance.getConsentManager();
+        if (gate != null && consentManager != null) {
+            gate.update(consentManager.getUserConsentStatus(), consentManager.getUserConsentCategories());
+        }
+    }
+
+    /**
+     * Keeps the instance's consent gate in step with changes the library makes itself, such as
+     * consent set natively, expired or reset, not just those made through this module.
+     */
+    static UserConsentPreferencesUpdateListener createConsentUpdateListener(final String instanceName) {
+        return new UserConsentPreferencesUpdateListener() {
+            @Override
+            public void onUserConsentPreferencesUpdated(UserConsentPreferences userConsentPreferences, ConsentManager consentManager) {
+                refreshConsentGate(instanceName);
+            }
+        };
+    }
+
+    @ReactMethod
+    public void getInstanceHandle(String instanceName, Promise promise) {
+        final int handle = mInstanceHandles.getHandle(instanceName);
+        if (handle == InstanceHandles.INVALID_HANDLE) {
+            promise.reject(ERROR_NO_INSTANCE, "Tealium not enabled for instance name: " + instanceName);
+            return;
+        }
+        promise.resolve(handle);
+    }
+
+    @ReactMethod
+    public void destroyInstance(final String instanceName) {
+        getDispatcher().enqueue(new TrackingDispatcher.Task(false) {
+            @Override
+            public void run() {
+                final Tealium instance = getTealiumInstance(instanceName);
+                if (instance != null) {
+                    PersistentDataCache cache = mPersistentDataCaches.remove(instance.getDataSources().getPersistentDataSources());
+                    if (cache != null) {
+                        cache.close();
+                    }
+                    mVolatileDataSnapshots.remove(instance);
+                    mVolatileDataExpiries.remove(instance);
+                    mConsentGates.remove(instance);
+                    mRestoredPersistentBackends.remove(instance);
+                    MappedPersistentStore store = mMappedPersistentStores.remove(instance);
+                    if (store != null) {
+                        store.close();
+                    }
+                }
+                mInstanceHandles.invalidate(instanceName);
+                mRemoteCommands.removeAll(instanceName);
+                RemoteCommandHandlers.detach(instanceName);
+                final PendingTaskBuffer<InstanceTask> pending = mPendingTasks.remove(instanceName);
+                if (pending != null) {
+                    for (InstanceTask task : pending.clear()) {
+                        task.onDropped("Pending call dropped; Tealium instance destroyed: " + instanceName);
+                    }
+                }
+                Tealium.destroyInstance(instanceName);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void trackEventForHandle(int handle, final String eventName, final ReadableMap data) {
+        getDispatcher().enqueue(new InstanceTask(handle, true) {
+            @Override
+            void run(Tealium instance) {
+                performTrackEvent(instance, eventName, data);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void trackViewForHandle(int handle, final String viewName, final ReadableMap data) {
+        getDispatcher().enqueue(new InstanceTask(handle, true) {
+            @Override
+            void run(Tealium instance) {
+                performTrackView(instance, viewName, data);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setVolatileDataForHandle(int handle, final ReadableMap data) {
+        getDispatcher().enqueue(new InstanceTask(handle, false) {
+            @Override
+            void run(Tealium instance) {
+                performSetVolatileData(instance, data);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setPersistentDataForHandle(int handle, final ReadableMap data) {
+        getDispatcher().enqueue(new InstanceTask(handle, false) {
+            @Override
+            void run(Tealium instance) {
+                performSetPersistentData(instance, data);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void removeVolatileDataForHandle(int handle, final ReadableArray keyArray) {
+        getDispatcher().enqueue(new InstanceTask(handle, false) {
+            @Override
+            void run(Tealium instance) {
+                performRemoveVolatileData(instance, keyArray);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void removePersistentDataForHandle(int handle, final ReadableArray keyArray) {
+        getDispatcher().enqueue(new InstanceTask(handle, false) {
+            @Override
+            void run(Tealium instance) {
+                performRemovePersistentData(instance, keyArray);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setPayloadLimits(int maxDepth, int maxEntries) {
+        mPayloadConverter.setLimits(maxDepth, maxEntries);
+    }
+
+    /**
+     * Limits the nesting depth and number of values converted when JSON, such as a remote command
+     * payload, is sent to JS.
+     */
+    @ReactMethod
+    public void setNativePayloadLimits(int maxDepth, int maxEntries) {
+        mJsonConverter.setLimits(maxDepth, maxEntries);
+    }
+
+    @ReactMethod
+    public void setVolatileData(ReadableMap data) {
+        setVolatileDataForInstance(mTealiumInstanceName, data);
+    }
+
+    @ReactMethod
+    public void setVolatileDataForInstance(final String instanceName, final ReadableMap data) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                performSetVolatileData(instance, data);
+            }
+        });
+    }
+
+    private void performSetVolatileData(Tealium instance, ReadableMap data) {
+        final List<String> nullKeys = new ArrayList<>();
+        final Map<String, Object> values = toDataValues(data, nullKeys);
+
+        // a plain set replaces any value for the same key from an atomic update
+        getVolatileDataSnapshot(instance).update(values, nullKeys);
+        cancelVolatileDataExpiry(instance, values.keySet());
+        cancelVolatileDataExpiry(instance, nullKeys);
+    }
+
+    @ReactMethod
+    public void updateVolatileData(ReadableMap data, ReadableArray removeKeys) {
+        updateVolatileDataForInstance(mTealiumInstanceName, data, removeKeys);
+    }
+
+    /**
+     * Applies all of data and removeKeys, or nothing if any value is unsupported, as one snapshot.
+     * Tracks sent through this module see either the whole update or none of it.
+     */
+    @ReactMethod
+    public void updateVolatileDataForInstance(final String instanceName, final ReadableMap data, final ReadableArray removeKeys) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                performUpdateVolatileData(instance, data, removeKeys, null);
+            }
+        });
+    }
+
+    /**
+     * Sends only what changed in the JS data layer since the previous sync. version must increase
+     * with every call; a change set older than one already applied is dropped, so a late delivery
+     * can't roll keys back.
+     */
+    @ReactMethod
+    public void syncVolatileData(String instanceName, final double version, final ReadableMap changes, final ReadableArray removals) {
+        getDispatcher().enqueue(new InstanceTask(instanceName != null ? instanceName : mTealiumInstanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                performUpdateVolatileData(instance, changes, removals, (long) version);
+            }
+        });
+    }
+
+    private void performUpdateVolatileData(Tealium instance, ReadableMap data, ReadableArray removeKeys, Long version) {
+        final List<String> removals = new ArrayList<>();
+        final Map<String, Object> values = data != null ? toDataValues(data, removals) : null;
+        if (removeKeys != null) {
+            for (int i = 0; i < removeKeys.size(); i++) {
+                if (removeKeys.getType(i) != ReadableType.String) {
+                    Log.e(BuildConfig.TAG, "Volatile data update rejected; invalid key type. Use array of strings");
+                    return;
+                }
+                removals.add(removeKeys.getString(i));
+            }
+        }
+
+        final VolatileDataSnapshot snapshot = getVolatileDataSnapshot(instance);
+        if (version == null) {
+            snapshot.update(values, removals);
+        } else if (!snapshot.update(version, values, removals)) {
+            Log.w(BuildConfig.TAG, "Volatile data sync version " + version + " rejected; version "
+                    + snapshot.getVersion() + " is already applied");
+            return;
+        }
+        cancelVolatileDataExpiry(instance, removals);
+        if (values != null) {
+            cancelVolatileDataExpiry(instance, values.keySet());
+        }
+    }
+
+    /**
+     * Converts data into natively typed values: String, Long for whole numbers at any depth, Double,
+     * Boolean, List for arrays and JSONObject for maps. Keys set to null are left out and added to
+     * nullKeys, since a null value means the key should be removed.
+     */
+    private static Map<String, Object> toDataValues(ReadableMap data, List<String> nullKeys) {
+        final Map<String, Object> values = mPayloadConverter.toDataValues(data);
+        final Iterator<Map.Entry<String, Object>> iterator = values.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Object> entry = iterator.next();
+            if (entry.getValue() == null) {
+                nullKeys.add(entry.getKey());
+                iterator.remove();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Atomic volatile data, keyed by instance. Only touched on the dispatcher thread; the snapshots
+     * themselves may be read from anywhere.
+     */
+    private static VolatileDataSnapshot getVolatileDataSnapshot(Tealium instance) {
+        VolatileDataSnapshot snapshot = mVolatileDataSnapshots.get(instance);
+        if (snapshot == null) {
+            snapshot = new VolatileDataSnapshot(instance.getDataSources().getVolatileDataSources());
+            mVolatileDataSnapshots.put(instance, snapshot);
+        }
+        return snapshot;
+    }
+
+    @ReactMethod
+    public void setVolatileDataWithExpiry(ReadableMap data, ReadableMap expiry) {
+        setVolatileDataWithExpiryForInstance(mTealiumInstanceName, data, expiry);
+    }
+
+    /**
+     * Sets volatile data that removes itself. expiry may hold ttl (milliseconds), events (the
+     * number of tracks the keys are sent with) and nextView (drop the keys once the next view has
+     * been sent with them); the keys expire when the first limit is reached.
+     */
+    @ReactMethod
+    public void setVolatileDataWithExpiryForInstance(final String instanceName, final ReadableMap data, final ReadableMap expiry) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                performSetVolatileDataWithExpiry(instance, data, expiry);
+            }
+        });
+    }
+
+    private void performSetVolatileDataWithExpiry(Tealium instance, ReadableMap data, ReadableMap expiry) {
+        final long ttl = expiry != null && expiry.hasKey("ttl") && expiry.getType("ttl") == ReadableType.Number
+                ? (long) expiry.getDouble("ttl")
+                : 0;
+        final int tracks = expiry != null && expiry.hasKey("events") && expiry.getType("events") == ReadableType.Number
+                ? expiry.getInt("events")
+                : 0;
+        final boolean untilNextView = expiry != null && expiry.hasKey("nextView")
+                && expiry.getType("nextView") == ReadableType.Boolean
+                && expiry.getBoolean("nextView");
+        if (ttl <= 0 && tracks <= 0 && !untilNextView) {
+            Log.e(BuildConfig.TAG, "Volatile data expiry rejected; provide a positive ttl or events, or nextView: true");
+            return;
+        }
+
+        final List<String> nullKeys = new ArrayList<>();
+        final Map<String, Object> values = toDataValues(data, nullKeys);
+
+        getVolatileDataSnapshot(instance).update(values, nullKeys);
+        cancelVolatileDataExpiry(instance, nullKeys);
+        final long now = SystemClock.elapsedRealtime();
+        final VolatileDataExpiry dataExpiry = getVolatileDataExpiry(instance, now);
+        for (String key : values.keySet()) {
+            dataExpiry.schedule(key, ttl, tracks, untilNextView, now);
         }
+        if (ttl > 0 && !values.isEmpty()) {
+            scheduleVolatileDataSweep(instance, ttl + VolatileDataExpiry.TICK_MILLIS);
+        }
+    }
+
+    /**
+     * Expires volatile data once the delay has passed even if nothing is tracked through this
+     * module, so events the library sends itself don't pick up keys whose time to live is over.
+     */
+    private static void scheduleVolatileDataSweep(final Tealium instance, long delayMillis) {
+        getLifecycleHandler().postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                getDispatcher().enqueue(new TrackingDispatcher.Task(true) {
+                    @Override
+                    public void run() {
+                        expireVolatileData(instance);
+                    }
+                });
+            }
+        }, delayMillis);
+    }
+
+    private static VolatileDataExpiry getVolatileDataExpiry(Tealium instance, long now) {
+        VolatileDataExpiry expiry = mVolatileDataExpiries.get(instance);
+        if (expiry == null) {
+            expiry = new VolatileDataExpiry(now);
+            mVolatileDataExpiries.put(instance, expiry);
+        }
+        return expiry;
+    }
+
+    /**
+     * Drops volatile keys whose time to live has passed. Called before volatile data is read.
+     */
+    private static void expireVolatileData(Tealium instance) {
+        final VolatileDataExpiry expiry = mVolatileDataExpiries.get(instance);
+        if (expiry == null || expiry.isEmpty()) {
+            return;
+        }
+        final List<String> expired = expiry.advance(SystemClock.elapsedRealtime());
+        if (!expired.isEmpty()) {
+            getVolatileDataSnapshot(instance).remove(expired);
+        }
+    }
+
+    private static void countVolatileDataTrack(Tealium instance, boolean isView) {
+        final VolatileDataExpiry expiry = mVolatileDataExpiries.get(instance);
+        if (expiry == null) {
+            return;
+        }
+        final List<String> expired = expiry.onTrack(isView);
+        if (!expired.isEmpty()) {
+            getVolatileDataSnapshot(instance).remove(expired);
+        }
+    }
+
+    private static void cancelVolatileDataExpiry(Tealium instance, Collection<String> keys) {
+        final VolatileDataExpiry expiry = mVolatileDataExpiries.get(instance);
+        if (expiry != null) {
+            expiry.cancel(keys);
+        }
+    }
+
+    @ReactMethod
+    public void setPersistentData(ReadableMap data) {
+        setPersistentDataForInstance(mTealiumInstanceName, data);
+    }
+
+    @ReactMethod
+    public void setPersistentDataForInstance(final String instanceName, final ReadableMap data) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                performSetPersistentData(instance, data);
+            }
+        });
+    }
+
+    private void performSetPersistentData(Tealium instance, ReadableMap data) {
+        final long startTime = System.nanoTime();
+        final SharedPreferences sp = instance.getDataSources().getPersistentDataSources();
+
+        final List<String> nullKeys = new ArrayList<>();
+        final Map<String, Object> values = toDataValues(data, nullKeys);
+        final MappedPersistentStore store = mMappedPersistentStores.get(instance);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() instanceof List) {
+                // the mapped store keeps arrays typed and in order; SharedPreferences arrays stay
+                // string sets, as the library reads them from there and has always stored them
+                final JSONArray array = new JSONArray((List) entry.getValue());
+                entry.setValue(store != null ? array : jsonArrayToStringSet(array));
+            }
+        }
+
+        if (store != null) {
+            try {
+                store.putAll(values);
+                for (String key : nullKeys) {
+                    store.remove(key);
+                }
+            } catch (IOException e) {
+                Log.e(BuildConfig.TAG, "Could not write persistent data to mapped store", e);
+            }
+            // keys written before the switch now live in the mapped store only
+            final PersistentDataCache cache = getPersistentDataCache(sp);
+            final List<String> movedKeys = new ArrayList<>();
+            for (String key : values.keySet()) {
+                if (cache.get(key) != null) {
+                    movedKeys.add(key);
+                }
+            }
+            for (String key : nullKeys) {
+                if (cache.get(key) != null) {
+                    movedKeys.add(key);
+                }
+            }
+            removeSharedPreferencesKeys(instance, movedKeys);
+            logPersistentWrite("set", values.size() + nullKeys.size(), startTime);
+            return;
+        }
+
+        SharedPreferences.Editor editor = sp.edit();
+        SharedPreferences.Editor types = getPersistentTypePreferences(instance).edit();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            entry.setValue(putPreference(editor, types, entry.getKey(), entry.getValue()));
+        }
+        for (String key : nullKeys) {
+            editor.remove(key);
+            types.remove(key);
+        }
+        types.apply();
+
+        final PersistentDataCache cache = getPersistentDataCache(sp);
+        cache.putAll(values);
+        for (String key : nullKeys) {
+            cache.remove(key);
+        }
+        editor.apply();
+        logPersistentWrite("set", values.size() + nullKeys.size(), startTime);
+    }
+
+    /**
+     * Stores the value under its closest SharedPreferences type and returns the value as it is
+     * stored. Fractions that a float can't hold exactly and maps are stored as strings, which the
+     * library sends as they are, with their type recorded in types so that
+     * {@link #readPersistentValue} reads them back as a Double or a JSONObject.
+     */
+    private static Object putPreference(SharedPreferences.Editor editor, SharedPreferences.Editor types, String key, Object value) {
+        types.remove(key);
+        if (value instanceof Set) {
+            editor.putStringSet(key, (Set<String>) value);
+            return value;
+        } else if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+            return value;
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+            return value;
+        } else if (value instanceof Double && (double) ((Double) value).floatValue() == (Double) value) {
+            editor.putFloat(key, ((Double) value).floatValue());
+            return ((Double) value).floatValue();
+        } else if (value instanceof Double) {
+            types.putString(key, PERSISTENT_TYPE_DOUBLE);
+        } else if (value instanceof JSONObject) {
+            types.putString(key, PERSISTENT_TYPE_MAP);
+        }
+
+        final String string = value.toString();
+        editor.putString(key, string);
+        return string;
+    }
+
+    /**
+     * Restores the type of a value putPreference had to store as a string. A string written over
+     * it by other code is returned as it is.
+     */
+    private static Object decodePreference(Tealium instance, String key, String value) {
+        final String type = getPersistentTypePreferences(instance).getString(key, null);
+        try {
+            if (PERSISTENT_TYPE_DOUBLE.equals(type)) {
+                return Double.valueOf(value);
+            } else if (PERSISTENT_TYPE_MAP.equals(type)) {
+                return new JSONObject(value);
+            }
+        } catch (NumberFormatException | JSONException e) {
+            Log.w(BuildConfig.TAG, "Persistent data key " + key + " no longer holds a " + type + "; read as a string");
+        }
+        return value;
+    }
+
+    /**
+     * The types of an instance's persistent keys stored as strings, kept apart from its persistent
+     * data so the library doesn't send them.
+     */
+    private static SharedPreferences getPersistentTypePreferences(Tealium instance) {
+        return mReactContext.getSharedPreferences(PERSISTENT_TYPE_PREFERENCES + mRestoredPersistentBackends.get(instance),
+                Context.MODE_PRIVATE);
+    }
+
+    @ReactMethod
+    public void removeVolatileData(ReadableArray keyArray) {
+        removeVolatileDataForInstance(mTealiumInstanceName, keyArray);
+    }
+
+    @ReactMethod
+    public void removeVolatileDataForInstance(final String instanceName, final ReadableArray keyArray) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                performRemoveVolatileData(instance, keyArray);
+            }
+        });
+    }
+
+    private void performRemoveVolatileData(Tealium instance, ReadableArray keyArray) {
+        final List<String> keys = new ArrayList<>(keyArray.size());
+        for (int i = 0; i < keyArray.size(); i++) {
+            ReadableType type = keyArray.getType(i);
+            switch (type) {
+                case String:
+                    instance.getDataSources().getVolatileDataSources()
+                            .remove(keyArray.getString(i));
+                    keys.add(keyArray.getString(i));
+                    break;
+                default:
+                    Log.e(BuildConfig.TAG, "Invalid key type. Use array of strings");
+                    break;
+            }
+        }
+
+        final VolatileDataSnapshot snapshot = mVolatileDataSnapshots.get(instance);
+        if (snapshot != null) {
+            snapshot.remove(keys);
+        }
+        cancelVolatileDataExpiry(instance, keys);
+    }
+
+    @ReactMethod
+    public void removePersistentData(ReadableArray keyArray) {
+        removePersistentDataForInstance(mTealiumInstanceName, keyArray);
+    }
+
+    @ReactMethod
+    public void removePersistentDataForInstance(final String instanceName, final ReadableArray keyArray) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                performRemovePersistentData(instance, keyArray);
+            }
+        });
+    }
+
+    private void performRemovePersistentData(Tealium instance, ReadableArray keyArray) {
+        final long startTime = System.nanoTime();
+        final List<String> keys = new ArrayList<>(keyArray.size());
+        for (int i = 0; i < keyArray.size(); i++) {
+            ReadableType type = keyArray.getType(i);
+            switch (type) {
+                case String:
+                    keys.add(keyArray.getString(i));
+                    break;
+                default:
+                    Log.e(BuildConfig.TAG, "Invalid key type. Use array of strings");
+            }
+        }
+
+        final MappedPersistentStore store = mMappedPersistentStores.get(instance);
+        if (store != null) {
+            for (String key : keys) {
+                try {
+                    store.remove(key);
+                } catch (IOException e) {
+                    Log.e(BuildConfig.TAG, "Could not remove persistent data from mapped store", e);
+                }
+            }
+        }
+        // with a mapped store, keys written before the switch may still be in SharedPreferences
+        removeSharedPreferencesKeys(instance, keys);
+        logPersistentWrite("remove", keyArray.size(), startTime);
+    }
+
+    private static void removeSharedPreferencesKeys(Tealium instance, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        final SharedPreferences sp = instance.getDataSources().getPersistentDataSources();
+        final PersistentDataCache cache = getPersistentDataCache(sp);
+        SharedPreferences.Editor editor = sp.edit();
+        SharedPreferences.Editor types = getPersistentTypePreferences(instance).edit();
+        for (String key : keys) {
+            editor.remove(key);
+            types.remove(key);
+            cache.remove(key);
+        }
+        types.apply();
+        editor.apply();
+    }
+
+    @ReactMethod
+    public void commitPersistentData(Promise promise) {
+        commitPersistentDataForInstance(mTealiumInstanceName, promise);
+    }
+
+    /**
+     * Resolves once every persistent data change queued before this call has been written to disk.
+     * An empty commit waits behind any pending apply() writes, so it doubles as a flush.
+     */
+    @ReactMethod
+    public void commitPersistentDataForInstance(String instanceName, final Promise promise) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, promise) {
+            @Override
+            void run(Tealium instance) {
+                final long startTime = System.nanoTime();
+                final MappedPersistentStore store = mMappedPersistentStores.get(instance);
+                final boolean committed;
+                if (store != null) {
+                    store.force();
+                    committed = true;
+                } else {
+                    committed = instance.getDataSources().getPersistentDataSources().edit().commit();
+                }
+
+                WritableMap result = Arguments.createMap();
+                result.putBoolean("committed", committed);
+                result.putDouble("commitTime", (System.nanoTime() - startTime) / 1e6);
+                promise.resolve(result);
+            }
+        });
+    }
+
+    private static void logPersistentWrite(String operation, int keyCount, long startTime) {
+        Log.d(BuildConfig.TAG, "Persistent data " + operation + " of " + keyCount + " keys took "
+                + (System.nanoTime() - startTime) / 1e6 + " ms");
+    }
+
+    @ReactMethod
+    public void getVolatileData(String key, Callback callback) {
+        getVolatileDataForInstance(mTealiumInstanceName, key, callback);
     }
 
-    private Map<String, Object> convertMapsToJson(Map<String, Object> mapData) {
-        Set<String> keySet = mapData.keySet();
-        for (String key : keySet) {
-            if (mapData.get(key) instanceof Map) {
-                mapData.put(key, new JSONObject((Map) mapData.get(key)));
+    @ReactMethod
+    public void getVolatileDataForInstance(final String instanceName, final String key, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                performGetVolatileData(instance, key, callback);
             }
+        });
+    }
+
+    private void performGetVolatileData(Tealium instance, String key, Callback callback) {
+        expireVolatileData(instance);
+        final VolatileDataSnapshot snapshot = mVolatileDataSnapshots.get(instance);
+        if (snapshot != null && snapshot.containsKey(key)) {
+            callback.invoke(toCallbackValue(snapshot.get(key)));
+            return;
         }
-        return mapData;
+        callback.invoke(toCallbackValue(instance.getDataSources().getVolatileDataSources().get(key)));
     }
 
     @ReactMethod
-    public void setVolatileData(ReadableMap data) {
-        setVolatileDataForInstance(mTealiumInstanceName, data);
+    public void getAllVolatileData(Callback callback) {
+        getAllVolatileDataForInstance(mTealiumInstanceName, callback);
     }
 
+    /**
+     * Returns all volatile data, including atomic updates, in a single callback.
+     */
     @ReactMethod
-    public void setVolatileDataForInstance(String instanceName, ReadableMap data) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "SetVolatileData attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
+    public void getAllVolatileDataForInstance(final String instanceName, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                expireVolatileData(instance);
+                final Map<String, Object> values = new HashMap<>(instance.getDataSources().getVolatileDataSources());
+                final VolatileDataSnapshot snapshot = mVolatileDataSnapshots.get(instance);
+                if (snapshot != null) {
+                    values.putAll(snapshot.get());
+                }
 
-        ReadableMapKeySetIterator iterator = data.keySetIterator();
-        while (iterator.hasNextKey()) {
-            String key = iterator.nextKey();
-            ReadableType type = data.getType(key);
-            switch (type) {
-                case String:
-                    instance.getDataSources().getVolatileDataSources().put(key, data.getString(key));
-                    break;
-                case Array:
-                    instance.getDataSources().getVolatileDataSources().put(key, data.getArray(key).toArrayList());
-                    break;
-                default:
-                    throw new IllegalArgumentException("Could not set volatile data for key: " + key);
+                WritableMap result = Arguments.createMap();
+                for (Map.Entry<String, Object> entry : values.entrySet()) {
+                    putCallbackValue(result, entry.getKey(), entry.getValue());
+                }
+                callback.invoke(result);
             }
-        }
+        });
     }
 
     @ReactMethod
-    public void setPersistentData(ReadableMap data) {
-        setPersistentDataForInstance(mTealiumInstanceName, data);
+    public void getPersistentData(String key, Callback callback) {
+        getPersistentDataForInstance(mTealiumInstanceName, key, callback);
     }
 
     @ReactMethod
-    public void setPersistentDataForInstance(String instanceName, ReadableMap data) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "SetPersistentData attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
-        SharedPreferences sp = instance.getDataSources().getPersistentDataSources();
-
-        Map<String, Object> obj = data.toHashMap();
-
-        Iterator<String> keyIterator = obj.keySet().iterator();
-        while (keyIterator.hasNext()) {
-            String key = keyIterator.next();
-
-            if (obj.get(key) instanceof String) {
-                sp.edit().putString(key, (String) obj.get(key)).apply();
-
-            } else if (obj.get(key) instanceof List) {
-                Set<String> set = jsonArrayToStringSet(new JSONArray((List) obj.get(key)));
-                sp.edit().putStringSet(key, set).apply();
-
-            } else if (obj.get(key) instanceof JSONArray) {
-                Set<String> set = jsonArrayToStringSet((JSONArray) obj.get(key));
-                sp.edit().putStringSet(key, set).apply();
-
-            } else {
-                throw new IllegalArgumentException("Could not set persistent data for key: " + key);
+    public void getPersistentDataForInstance(final String instanceName, final String key, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                performGetPersistentData(instance, key, callback);
             }
-        }
+        });
     }
 
-    @ReactMethod
-    public void removeVolatileData(ReadableArray keyArray) {
-        removeVolatileDataForInstance(mTealiumInstanceName, keyArray);
+    private void performGetPersistentData(Tealium instance, String key, Callback callback) {
+        callback.invoke(toCallbackValue(readPersistentValue(instance, key)));
     }
 
     @ReactMethod
-    public void removeVolatileDataForInstance(String instanceName, ReadableArray keyArray) {
-        final Tealium instance = Tealium.getInstance(instanceName);
+    public void getPersistentDataMulti(ReadableArray keys, Callback callback) {
+        getPersistentDataMultiForInstance(mTealiumInstanceName, keys, callback);
+    }
 
-        for (int i = 0; i < keyArray.size(); i++) {
-            ReadableType type = keyArray.getType(i);
-            switch (type) {
-                case String:
-                    instance.getDataSources().getVolatileDataSources()
-                            .remove(keyArray.getString(i));
-                    break;
-                default:
-                    Log.e(BuildConfig.TAG, "Invalid key type. Use array of strings");
-                    break;
+    /**
+     * Reads many persistent keys in one bridge crossing. Missing keys map to null.
+     */
+    @ReactMethod
+    public void getPersistentDataMultiForInstance(String instanceName, final ReadableArray keys, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                WritableMap values = Arguments.createMap();
+                for (int i = 0; i < keys.size(); i++) {
+                    if (keys.getType(i) != ReadableType.String) {
+                        Log.e(BuildConfig.TAG, "Invalid key type. Use array of strings");
+                        continue;
+                    }
+                    String key = keys.getString(i);
+                    putCallbackValue(values, key, readPersistentValue(instance, key));
+                }
+                callback.invoke(values);
             }
+        });
+    }
+
+    private static Object readPersistentValue(Tealium instance, String key) {
+        final MappedPersistentStore store = mMappedPersistentStores.get(instance);
+        if (store != null && store.contains(key)) {
+            return store.get(key);
         }
+        // keys set before switching to a mapped store are still read from SharedPreferences
+        final Object value = getPersistentDataCache(instance.getDataSources().getPersistentDataSources()).get(key);
+        return value instanceof String ? decodePreference(instance, key, (String) value) : value;
     }
 
     @ReactMethod
-    public void removePersistentData(ReadableArray keyArray) {
-        removePersistentDataForInstance(mTealiumInstanceName, keyArray);
+    public void setPersistentDataBackend(String backend) {
+        setPersistentDataBackendForInstance(mTealiumInstanceName, backend);
     }
 
+    /**
+     * Switches where setPersistentData stores its keys: "sharedPreferences" (default), or "mappedFile"
+     * for the append-only MappedPersistentStore. Keys in a mapped store are attached to every track
+     * made through this module, since the Tealium library only reads persistent data from its
+     * SharedPreferences. The choice is remembered, and the mapped store reopened when the instance is
+     * next created. Keys already in SharedPreferences stay readable and move to the mapped store when
+     * they are next set.
+     */
     @ReactMethod
-    public void removePersistentDataForInstance(String instanceName, ReadableArray keyArray) {
-        final Tealium instance = Tealium.getInstance(instanceName);
+    public void setPersistentDataBackendForInstance(final String instanceName, final String backend) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                final MappedPersistentStore current = mMappedPersistentStores.get(instance);
+                if (PERSISTENT_BACKEND_MAPPED_FILE.equals(backend)) {
+                    if (current == null) {
+                        openMappedPersistentStore(instanceName, instance);
+                    }
+                } else if (PERSISTENT_BACKEND_SHARED_PREFERENCES.equals(backend)) {
+                    if (current != null) {
+                        current.close();
+                        mMappedPersistentStores.remove(instance);
+                    }
+                } else {
+                    Log.e(BuildConfig.TAG, "Invalid persistent data backend: " + backend + ". Use sharedPreferences or mappedFile");
+                    return;
+                }
+                getModulePreferences().edit().putString(PERSISTENT_BACKEND_PREFERENCE + instanceName, backend).apply();
+            }
+        });
+    }
 
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "RemovePersistentData attempted, but Tealium not enabled for instance name: " + instanceName);
+    /**
+     * Reopens the mapped store of an instance that chose one in an earlier session, before the
+     * instance's first task runs on the dispatcher thread.
+     */
+    private static void restorePersistentDataBackend(String instanceName, Tealium instance) {
+        if (mRestoredPersistentBackends.put(instance, instanceName) != null || mMappedPersistentStores.containsKey(instance)) {
             return;
         }
+        final String backend = getModulePreferences().getString(PERSISTENT_BACKEND_PREFERENCE + instanceName, null);
+        if (PERSISTENT_BACKEND_MAPPED_FILE.equals(backend)) {
+            openMappedPersistentStore(instanceName, instance);
+        }
+    }
 
-        for (int i = 0; i < keyArray.size(); i++) {
-            ReadableType type = keyArray.getType(i);
-            switch (type) {
-                case String:
-                    instance.getDataSources().getPersistentDataSources()
-                            .edit()
-                            .remove(keyArray.getString(i))
-                            .apply();
-                    break;
-                default:
-                    Log.e(BuildConfig.TAG, "Invalid key type. Use array of strings");
-            }
+    private static void openMappedPersistentStore(String instanceName, Tealium instance) {
+        final File file = MappedPersistentStore.fileFor(
+                new File(mReactContext.getFilesDir(), MAPPED_STORE_DIRECTORY), instanceName);
+        try {
+            mMappedPersistentStores.put(instance, MappedPersistentStore.open(file));
+        } catch (IOException e) {
+            Log.e(BuildConfig.TAG, "Could not open mapped persistent store for instance name: " + instanceName, e);
         }
     }
 
+    /**
+     * The module's own settings, kept apart from the instances' persistent data so the library
+     * doesn't send them.
+     */
+    private static SharedPreferences getModulePreferences() {
+        return mReactContext.getSharedPreferences(MODULE_PREFERENCES, Context.MODE_PRIVATE);
+    }
+
     @ReactMethod
-    public void getVolatileData(String key, Callback callback) {
-        getVolatileDataForInstance(mTealiumInstanceName, key, callback);
+    public void getPersistentDataStats(Callback callback) {
+        getPersistentDataStatsForInstance(mTealiumInstanceName, callback);
     }
 
+    /**
+     * Reports the persistent data backend in use and how long it takes to read. For a mapped store
+     * loadTime is the cold load of the log; for SharedPreferences readAllTime is a getAll() copy.
+     */
     @ReactMethod
-    public void getVolatileDataForInstance(String instanceName, String key, Callback callback) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "Attempt to get volatile data, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
+    public void getPersistentDataStatsForInstance(String instanceName, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                WritableMap stats = Arguments.createMap();
+                final MappedPersistentStore store = mMappedPersistentStores.get(instance);
+                if (store != null) {
+                    stats.putString("backend", PERSISTENT_BACKEND_MAPPED_FILE);
+                    stats.putInt("keyCount", store.size());
+                    stats.putDouble("loadTime", store.getLoadTimeNanos() / 1e6);
+                    stats.putDouble("fileSize", store.getFileSize());
+                    stats.putDouble("liveBytes", store.getLiveBytes());
+                } else {
+                    final long startTime = System.nanoTime();
+                    final int keyCount = instance.getDataSources().getPersistentDataSources().getAll().size();
+                    stats.putString("backend", PERSISTENT_BACKEND_SHARED_PREFERENCES);
+                    stats.putInt("keyCount", keyCount);
+                    stats.putDouble("readAllTime", (System.nanoTime() - startTime) / 1e6);
+                }
+                callback.invoke(stats);
+            }
+        });
+    }
 
-        callback.invoke(instance.getDataSources().getVolatileDataSources().get(key));
+    /**
+     * Adds the data the library does not know about underneath the event's own data: the mapped
+     * store's keys, if the instance uses one, then the current atomic volatile data snapshot. Both
+     * are immutable snapshots that only change on write, so they are layered rather than copied.
+     *
+     * Only tracks sent through this module get the mapped store's keys. Events the library sends
+     * itself, such as lifecycle events, native tracks and tracks started by remote commands, read
+     * persistent data from SharedPreferences only; copying the keys there would bring back the
+     * full-file rewrites the mapped store avoids.
+     */
+    private static Map<String, Object> withModuleData(Tealium instance, Map<String, Object> data) {
+        expireVolatileData(instance);
+        final MappedPersistentStore store = mMappedPersistentStores.get(instance);
+        final VolatileDataSnapshot snapshot = mVolatileDataSnapshots.get(instance);
+        final Map<String, Object> volatileData = snapshot != null ? snapshot.get() : null;
+
+        Map<String, Object> moduleData = store != null ? store.getSnapshot() : null;
+        if (volatileData != null && !volatileData.isEmpty()) {
+            moduleData = moduleData != null ? new LayeredMap(volatileData, moduleData) : volatileData;
+        }
+        if (moduleData == null || moduleData.isEmpty()) {
+            return data;
+        }
+        return data != null && !data.isEmpty() ? new LayeredMap(data, moduleData) : moduleData;
     }
 
-    @ReactMethod
-    public void getPersistentData(String key, Callback callback) {
-        getPersistentDataForInstance(mTealiumInstanceName, key, callback);
+    /**
+     * Persistent data caches, keyed by the instance's preferences. Only touched on the dispatcher thread.
+     */
+    private static PersistentDataCache getPersistentDataCache(SharedPreferences sp) {
+        PersistentDataCache cache = mPersistentDataCaches.get(sp);
+        if (cache == null) {
+            cache = new PersistentDataCache(sp);
+            mPersistentDataCaches.put(sp, cache);
+        }
+        return cache;
     }
 
-    @ReactMethod
-    public void getPersistentDataForInstance(String instanceName, String key, Callback callback) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "Attempt to get persistent data, but Tealium not enabled for instance name: " + instanceName);
-            return;
+    private static Object toCallbackValue(Object value) {
+        if (value instanceof Collection) {
+            WritableArray array = Arguments.createArray();
+            for (Object item : (Collection) value) {
+                pushCallbackValue(array, item);
+            }
+            return array;
+        } else if (value instanceof JSONObject) {
+            return convertJsonToMap((JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            return convertJsonToArray((JSONArray) value);
+        } else if (value instanceof Number && !(value instanceof Integer)) {
+            return ((Number) value).doubleValue();
+        } else if (value == JSONObject.NULL) {
+            return null;
         }
+        return value;
+    }
 
-        Map<String, ?> allPersistentData = instance.getDataSources().getPersistentDataSources().getAll();
-        callback.invoke(allPersistentData.get(key));
+    private static void pushCallbackValue(WritableArray array, Object value) {
+        final Object callbackValue = toCallbackValue(value);
+        if (callbackValue == null) {
+            array.pushNull();
+        } else if (callbackValue instanceof String) {
+            array.pushString((String) callbackValue);
+        } else if (callbackValue instanceof WritableArray) {
+            array.pushArray((WritableArray) callbackValue);
+        } else if (callbackValue instanceof WritableMap) {
+            array.pushMap((WritableMap) callbackValue);
+        } else if (callbackValue instanceof Boolean) {
+            array.pushBoolean((Boolean) callbackValue);
+        } else if (callbackValue instanceof Integer) {
+            array.pushInt((Integer) callbackValue);
+        } else if (callbackValue instanceof Double) {
+            array.pushDouble((Double) callbackValue);
+        } else {
+            array.pushString(callbackValue.toString());
+        }
     }
 
-    private LifecycleEventListener createLifecycleEventListener(final String instanceName) {
+    private static void putCallbackValue(WritableMap map, String key, Object value) {
+        final Object callbackValue = toCallbackValue(value);
+        if (callbackValue == null) {
+            map.putNull(key);
+        } else if (callbackValue instanceof String) {
+            map.putString(key, (String) callbackValue);
+        } else if (callbackValue instanceof WritableArray) {
+            map.putArray(key, (WritableArray) callbackValue);
+        } else if (callbackValue instanceof WritableMap) {
+            map.putMap(key, (WritableMap) callbackValue);
+        } else if (callbackValue instanceof Boolean) {
+            map.putBoolean(key, (Boolean) callbackValue);
+        } else if (callbackValue instanceof Integer) {
+            map.putInt(key, (Integer) callbackValue);
+        } else if (callbackValue instanceof Double) {
+            map.putDouble(key, (Double) callbackValue);
+        } else {
+            map.putString(key, callbackValue.toString());
+        }
+    }
 
+    /**
+     * Tracks wake and sleep events on the tracking dispatcher, in the order the host reports them
+     * and after the track calls queued before them, so activity transitions never wait for tracking.
+     * Pausing sends the sleep event, then flushes everything queued so far, the sleep event included.
+     *
+     * A wake is sent at the first frame after the resume, timed from the resume, or at once without
+     * a time if the app is paused before that frame.
+     */
+    private LifecycleEventListener createLifecycleEventListener(final String instanceName, final LaunchTrigger launch) {
         return new LifecycleEventListener() {
+            // main thread only
+            private long mResumedAt;
+            private boolean mAwaitingFrame;
+
+            private final Choreographer.FrameCallback mFirstFrame = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    if (mAwaitingFrame) {
+                        mAwaitingFrame = false;
+                        postWake(SystemClock.elapsedRealtime() - mResumedAt);
+                    }
+                }
+            };
+
             @Override
             public void onHostResume() {
-                if (!mDidTrackInitialLaunch) {
-                    final Handler handler = new Handler();
-                    handler.postDelayed(
-                            new Runnable() {
-                                @Override
-                                public void run() {
-                                    if (mIsLifecycleAutotracking) {
-                                        LifeCycle lf = LifeCycle.getInstance(instanceName);
-                                        Map<String, Object> data = new HashMap<>();
-                                        data.put("autotracked", "true");
-                                        lf.trackLaunchEvent(data);
-                                        mDidTrackInitialLaunch = true;
-                                    }
-                                }
-                            },
-                            700);
-                } else {
-                    if (mIsLifecycleAutotracking) {
-                        LifeCycle lf = LifeCycle.getInstance(instanceName);
-                        Map<String, Object> data = new HashMap<>();
-                        data.put("autotracked", "true");
-                        lf.trackWakeEvent(data);
-                    }
+                AppStartMetrics.onForeground();
+                if (!launch.onHostResumed() && !mAwaitingFrame) {
+                    mResumedAt = SystemClock.elapsedRealtime();
+                    mAwaitingFrame = true;
+                    Choreographer.getInstance().postFrameCallback(mFirstFrame);
                 }
             }
 
             @Override
             public void onHostPause() {
-                if (mIsLifecycleAutotracking) {
-                    LifeCycle lf = LifeCycle.getInstance(instanceName);
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("autotracked", "true");
-                    lf.trackSleepEvent(data);
+                if (mAwaitingFrame) {
+                    mAwaitingFrame = false;
+                    Choreographer.getInstance().removeFrameCallback(mFirstFrame);
+                    postWake(-1);
                 }
+                getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+                    @Override
+                    void run(Tealium instance) {
+                        final LifeCycle lf = getLifeCycle(instanceName);
+                        if (mIsLifecycleAutotracking && lf != null) {
+                            lf.trackSleepEvent(AUTOTRACKED_DATA);
+                        }
+                        flush(instance);
+                    }
+                });
+            }
+
+            private void postWake(final long startTimeMillis) {
+                getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+                    @Override
+                    void run(Tealium instance) {
+                        final LifeCycle lf = getLifeCycle(instanceName);
+                        if (mIsLifecycleAutotracking && lf != null) {
+                            lf.trackWakeEvent(AppStartMetrics.forWake(AUTOTRACKED_DATA, startTimeMillis));
+                        }
+                    }
+                });
             }
 
             @Override
@@ -425,6 +1861,19 @@ public class TealiumModule extends ReactContextBaseJavaModule {
         };
     }
 
+    /**
+     * Forces the instance's mapped persistent store to disk and asks the instance to send what it
+     * has queued. Runs on the dispatcher thread, so every track call queued before has been handed
+     * to the instance.
+     */
+    private static void flush(Tealium instance) {
+        final MappedPersistentStore store = mMappedPersistentStores.get(instance);
+        if (store != null) {
+            store.force();
+        }
+        instance.requestFlush();
+    }
+
     @ReactMethod
     public void getVisitorID(Callback callback) {
         getVisitorIDForInstance(mTealiumInstanceName, callback);
@@ -432,7 +1881,7 @@ public class TealiumModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void getVisitorIDForInstance(String instanceName, Callback callback) {
-        final Tealium instance = Tealium.getInstance(instanceName);
+        final Tealium instance = getTealiumInstance(instanceName);
         if (instance == null) {
             Log.e(BuildConfig.TAG, "GetVisitorID attempted, but Tealium not enabled for instance name: " + instanceName);
             return;
@@ -446,15 +1895,16 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void getUserConsentStatusForInstance(String instanceName, Callback callback) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "GetUserConsentStatus attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
-        if (instance.getConsentManager() != null) {
-            instance.getConsentManager().getUserConsentStatus();
-        }
+    public void getUserConsentStatusForInstance(final String instanceName, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentManager consentManager = getConsentManager(instanceName, "GetUserConsentStatus");
+                if (consentManager != null) {
+                    callback.invoke(consentManager.getUserConsentStatus());
+                }
+            }
+        });
     }
 
     @ReactMethod
@@ -463,16 +1913,18 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void setUserConsentStatusForInstance(String instanceName, int userConsentStatus) {
-        String consentStatus = mapUserConsentStatus(userConsentStatus);
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "SetUserConsentStatus attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
-        if (instance.getConsentManager() != null) {
-            instance.getConsentManager().setUserConsentStatus(consentStatus);
-        }
+    public void setUserConsentStatusForInstance(final String instanceName, int userConsentStatus) {
+        final String consentStatus = mapUserConsentStatus(userConsentStatus);
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentManager consentManager = getConsentManager(instanceName, "SetUserConsentStatus");
+                if (consentManager != null) {
+                    consentManager.setUserConsentStatus(consentStatus);
+                    updateConsentGate(instance);
+                }
+            }
+        });
     }
 
     @ReactMethod
@@ -481,15 +1933,16 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void getUserConsentCategoriesForInstance(String instanceName, Callback callback) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "GetUserConsentCategories attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
-        if (instance.getConsentManager() != null) {
-            callback.invoke(instance.getConsentManager().getUserConsentCategories());
-        }
+    public void getUserConsentCategoriesForInstance(final String instanceName, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentManager consentManager = getConsentManager(instanceName, "GetUserConsentCategories");
+                if (consentManager != null) {
+                    callback.invoke(consentManager.getUserConsentCategories());
+                }
+            }
+        });
     }
 
     @ReactMethod
@@ -498,27 +1951,29 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void setUserConsentCategoriesForInstance(String instanceName, ReadableArray categories) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "SetUserConsentCategories attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
-        if (instance.getConsentManager() != null) {
-            String[] userConsentCategories = new String[categories.toArrayList().size()];
-            for (int i = 0; i < categories.size(); i++) {
-                ReadableType type = categories.getType(i);
-                switch (type) {
-                    case String:
-                        userConsentCategories[i] = categories.getString(i);
-                        break;
-                    default:
-                        Log.e(BuildConfig.TAG, "Invalid key type. Use array of strings");
-                        break;
+    public void setUserConsentCategoriesForInstance(final String instanceName, final ReadableArray categories) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentManager consentManager = getConsentManager(instanceName, "SetUserConsentCategories");
+                if (consentManager != null) {
+                    String[] userConsentCategories = new String[categories.size()];
+                    for (int i = 0; i < categories.size(); i++) {
+                        ReadableType type = categories.getType(i);
+                        switch (type) {
+                            case String:
+                                userConsentCategories[i] = categories.getString(i);
+                                break;
+                            default:
+                                Log.e(BuildConfig.TAG, "Invalid key type. Use array of strings");
+                                break;
+                        }
+                    }
+                    consentManager.setUserConsentCategories(userConsentCategories);
+                    updateConsentGate(instance);
                 }
             }
-            instance.getConsentManager().setUserConsentCategories(userConsentCategories);
-        }
+        });
     }
 
     @ReactMethod
@@ -527,15 +1982,17 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void resetUserConsentPreferencesForInstance(String instanceName) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "ResetUserConsentPreferences attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
-        if (instance.getConsentManager() != null) {
-            instance.getConsentManager().resetUserConsentPreferences();
-        }
+    public void resetUserConsentPreferencesForInstance(final String instanceName) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentManager consentManager = getConsentManager(instanceName, "ResetUserConsentPreferences");
+                if (consentManager != null) {
+                    consentManager.resetUserConsentPreferences();
+                    updateConsentGate(instance);
+                }
+            }
+        });
     }
 
     @ReactMethod
@@ -544,15 +2001,16 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void setConsentLoggingEnabledForInstance(String instanceName, boolean isLogging) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "SetConsentLoggingEnabled attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
-        if (instance.getConsentManager() != null) {
-            instance.getConsentManager().setConsentLoggingEnabled(isLogging);
-        }
+    public void setConsentLoggingEnabledForInstance(final String instanceName, final boolean isLogging) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentManager consentManager = getConsentManager(instanceName, "SetConsentLoggingEnabled");
+                if (consentManager != null) {
+                    consentManager.setConsentLoggingEnabled(isLogging);
+                }
+            }
+        });
     }
 
     @ReactMethod
@@ -561,15 +2019,16 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void isConsentLoggingEnabledForInstanceName(String instanceName, Callback callback) {
-        final Tealium instance = Tealium.getInstance(instanceName);
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "ResetUserConsentPreferences attempted, but Tealium not enabled for instance name: " + instanceName);
-            return;
-        }
-        if (instance.getConsentManager() != null) {
-            callback.invoke(instance.getConsentManager().isConsentLogging());
-        }
+    public void isConsentLoggingEnabledForInstanceName(final String instanceName, final Callback callback) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, callback) {
+            @Override
+            void run(Tealium instance) {
+                final ConsentManager consentManager = getConsentManager(instanceName, "IsConsentLoggingEnabled");
+                if (consentManager != null) {
+                    callback.invoke(consentManager.isConsentLogging());
+                }
+            }
+        });
     }
 
     @ReactMethod
@@ -578,21 +2037,67 @@ public class TealiumModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void addRemoteCommandForInstanceName(String instanceName, final String commandID, String description) {
+    public void addRemoteCommandForInstanceName(final String instanceName, final String commandID, final String description) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                registerRemoteCommand(instanceName, instance, commandID, description);
+            }
+        });
+    }
 
-        final Tealium instance = Tealium.getInstance(instanceName);
+    /**
+     * Adds many remote commands in one call. Each entry is a map with an "id" and a "description".
+     * A null instanceName adds them to the default instance.
+     */
+    @ReactMethod
+    public void addRemoteCommands(String instanceName, final ReadableArray commands) {
+        final String name = instanceName != null ? instanceName : mTealiumInstanceName;
+        getDispatcher().enqueue(new InstanceTask(name, false) {
+            @Override
+            void run(Tealium instance) {
+                for (int i = 0; i < commands.size(); i++) {
+                    final ReadableMap command = commands.getMap(i);
+                    if (command == null || !command.hasKey("id") || command.isNull("id")) {
+                        Log.w(BuildConfig.TAG, "Skipping remote command without an id at index " + i);
+                        continue;
+                    }
+                    final String description = command.hasKey("description") && !command.isNull("description")
+                            ? command.getString("description")
+                            : "";
+                    registerRemoteCommand(name, instance, command.getString("id"), description);
+                }
+            }
+        });
+    }
 
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "addRemoteCommand attempted, but Tealium not enabled for instance name: " + instanceName);
+    private void registerRemoteCommand(String instanceName, Tealium instance, String commandID, String description) {
+        if (RemoteCommandHandlers.isRegistered(commandID)) {
+            Log.w(BuildConfig.TAG, "Remote command with id `" + commandID + "` is handled natively; JS registration ignored");
             return;
         }
 
-        RemoteCommand remoteCommand = new RemoteCommand(commandID, description) {
+        final RemoteCommand remoteCommand = createRemoteCommand(commandID, description);
+        final RemoteCommand previous = mRemoteCommands.put(instanceName, commandID, remoteCommand);
+        if (previous != null) {
+            instance.removeRemoteCommand(previous);
+        }
+        instance.addRemoteCommand(remoteCommand);
+    }
+
+    private RemoteCommand createRemoteCommand(final String commandID, String description) {
+        return new RemoteCommand(commandID, description) {
             @Override
             protected void onInvoke(Response remoteCommandResponse) throws Exception {
-                JSONObject payload = remoteCommandResponse.getRequestPayload();
-                WritableMap params = convertJsonToMap(payload);
-                sendEvent(mReactContext, mRemoteCommandEvent, params);
+                final JSONObject payload = remoteCommandResponse.getRequestPayload();
+                if (mRemoteCommandResponses.awaitsResponse(commandID) && mRemoteCommandEmitter.isObserved(commandID)) {
+                    final String correlationId = mRemoteCommandResponses.track(commandID, remoteCommandResponse);
+                    if (correlationId == null) {
+                        return;
+                    }
+                    payload.put(RemoteCommandResponses.CORRELATION_ID, correlationId);
+                }
+                mRemoteCommandEmitter.emit(commandID, payload);
             }
 
             @Override
@@ -600,33 +2105,157 @@ public class TealiumModule extends ReactContextBaseJavaModule {
                 return commandID;
             }
         };
+    }
 
-        instance.addRemoteCommand(remoteCommand);
-        mRemoteCommandsMap.put(commandID, remoteCommand);
+    /**
+     * Holds the command's invocations for windowMillis, or until the next frame when it is 0, and
+     * emits them as one RemoteCommandBatchEvent. Each command is held on its own window. A negative
+     * window turns batching off for the command.
+     */
+    @ReactMethod
+    public void setRemoteCommandBatching(String commandID, double windowMillis) {
+        mRemoteCommandEmitter.setBatchWindow(commandID, (long) windowMillis);
     }
 
+    /**
+     * Marks whether JS has a subscriber for the command. Only matters once filtering is enabled.
+     */
     @ReactMethod
-    public void removeRemoteCommand(String commandID) {
-        removeRemoteCommandForInstanceName(mTealiumInstanceName, commandID);
+    public void setRemoteCommandSubscribed(String commandID, boolean subscribed) {
+        mRemoteCommandEmitter.setSubscribed(commandID, subscribed);
     }
 
+    /**
+     * When enabled, payloads of commands without a JS subscriber are dropped natively instead of
+     * being converted and sent across the bridge.
+     */
     @ReactMethod
-    public void removeRemoteCommandForInstanceName(String instanceName, String commandID) {
+    public void setRemoteCommandFiltering(boolean enabled) {
+        mRemoteCommandEmitter.setFilteringEnabled(enabled);
+    }
 
-        final Tealium instance = Tealium.getInstance(instanceName);
+    /**
+     * Makes the command's invocations wait up to timeoutMillis for JS to call completeRemoteCommand
+     * with the correlation_id of the payload. A timeout of 0 or less stops waiting.
+     */
+    @ReactMethod
+    public void setRemoteCommandTimeout(String commandID, double timeoutMillis) {
+        mRemoteCommandResponses.setTimeout(commandID, (long) timeoutMillis);
+    }
 
-        if (instance == null) {
-            Log.e(BuildConfig.TAG, "addRemoteCommand attempted, but Tealium not enabled for instance name: " + instanceName);
+    @ReactMethod
+    public void setRemoteCommandResponseCapacity(int capacity) {
+        mRemoteCommandResponses.setCapacity(capacity);
+    }
+
+    @ReactMethod
+    public void completeRemoteCommand(String correlationId, int status, String body) {
+        if (!mRemoteCommandResponses.complete(correlationId, status, body)) {
+            Log.w(BuildConfig.TAG, "Remote command " + correlationId + " is not awaiting a response; it may have timed out");
+        }
+    }
+
+    /**
+     * Called by JS once its remote command listener is attached. Payloads that arrived before are
+     * delivered now, in order.
+     */
+    @ReactMethod
+    public void remoteCommandListenerAttached() {
+        mRemoteCommandEmitter.onListenerAttached();
+    }
+
+    /**
+     * Sets how many remote command payloads are held while JS is not ready, and whether the oldest
+     * (dropOldest) or the newest (dropNewest) payload is dropped once that many are held.
+     */
+    @ReactMethod
+    public void configureRemoteCommandQueue(int capacity, String overflowPolicy) {
+        TrackingDispatcher.OverflowPolicy policy = TrackingDispatcher.OverflowPolicy.fromString(overflowPolicy);
+        if (policy == null || policy == TrackingDispatcher.OverflowPolicy.BLOCK) {
+            Log.e(BuildConfig.TAG, "Invalid remote command queue policy: " + overflowPolicy + ". Use dropOldest or dropNewest");
             return;
         }
+        mRemoteCommandEmitter.configureHoldQueue(capacity, policy);
+    }
+
+    @ReactMethod
+    public void getRemoteCommandMetrics(Callback callback) {
+        final long completed = mRemoteCommandResponses.getCompletedCount();
+        final long timed = mRemoteCommandResponses.getTimedCount();
+        WritableMap metrics = Arguments.createMap();
+        metrics.putInt("inFlight", mRemoteCommandResponses.getInFlightCount());
+        metrics.putDouble("completed", completed);
+        metrics.putDouble("timedOut", mRemoteCommandResponses.getTimedOutCount());
+        metrics.putDouble("rejected", mRemoteCommandResponses.getRejectedCount());
+        metrics.putDouble("averageRoundTripTime", timed > 0
+                ? mRemoteCommandResponses.getTotalLatencyNanos() / 1e6 / timed
+                : 0);
+        metrics.putDouble("maxRoundTripTime", mRemoteCommandResponses.getMaxLatencyNanos() / 1e6);
+        metrics.putInt("pendingDelivery", mRemoteCommandEmitter.getPendingDeliveryCount());
+        metrics.putDouble("heldForDelivery", mRemoteCommandEmitter.getHeldCount());
+        metrics.putDouble("droppedBeforeDelivery", mRemoteCommandEmitter.getDroppedCount());
+        callback.invoke(metrics);
+    }
+
+    @ReactMethod
+    public void removeRemoteCommand(String commandID) {
+        removeRemoteCommandForInstanceName(mTealiumInstanceName, commandID);
+    }
+
+    @ReactMethod
+    public void removeRemoteCommandForInstanceName(final String instanceName, final String commandID) {
+        getDispatcher().enqueue(new InstanceTask(instanceName, false) {
+            @Override
+            void run(Tealium instance) {
+                unregisterRemoteCommand(instanceName, instance, commandID);
+            }
+        });
+    }
+
+    /**
+     * Removes many remote commands in one call. A null instanceName removes them from the default
+     * instance.
+     */
+    @ReactMethod
+    public void removeRemoteCommands(String instanceName, final ReadableArray commandIDs) {
+        final String name = instanceName != null ? instanceName : mTealiumInstanceName;
+        getDispatcher().enqueue(new InstanceTask(name, false) {
+            @Override
+            void run(Tealium instance) {
+                for (int i = 0; i < commandIDs.size(); i++) {
+                    unregisterRemoteCommand(name, instance, commandIDs.getString(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * Invokes the callback with the IDs of the remote commands added from JS to the instance,
+     * sorted. A null instanceName lists the default instance's commands.
+     */
+    @ReactMethod
+    public void getRemoteCommands(String instanceName, final Callback callback) {
+        final String name = instanceName != null ? instanceName : mTealiumInstanceName;
+        getDispatcher().enqueue(new InstanceTask(name, callback) {
+            @Override
+            void run(Tealium instance) {
+                WritableArray ids = Arguments.createArray();
+                for (String id : mRemoteCommands.getCommandIDs(name)) {
+                    ids.pushString(id);
+                }
+                callback.invoke(ids);
+            }
+        });
+    }
 
-        if (mRemoteCommandsMap.get(commandID) != null) {
-            instance.removeRemoteCommand(mRemoteCommandsMap.get(commandID));
+    private void unregisterRemoteCommand(String instanceName, Tealium instance, String commandID) {
+        final RemoteCommand remoteCommand = mRemoteCommands.remove(instanceName, commandID);
+        if (remoteCommand != null) {
+            instance.removeRemoteCommand(remoteCommand);
             Log.i(BuildConfig.TAG, "Remote command with id `" + commandID + "` has been removed from `" + instanceName + "`");
         } else {
-            Log.d(BuildConfig.TAG, "Remote command with id `" + commandID + "` does not exist");
+            Log.d(BuildConfig.TAG, "Remote command with id `" + commandID + "` does not exist for `" + instanceName + "`");
         }
-
     }
 
 
@@ -687,54 +2316,12 @@ public class TealiumModule extends ReactContextBaseJavaModule {
         return app;
     }
 
-    private static WritableMap convertJsonToMap(JSONObject jsonObject) throws JSONException {
-        WritableMap map = Arguments.createMap();
-
-        Iterator<String> iterator = jsonObject.keys();
-        while (iterator.hasNext()) {
-            String key = iterator.next();
-            Object value = jsonObject.get(key);
-            if (value instanceof JSONObject) {
-                map.putMap(key, convertJsonToMap((JSONObject) value));
-            } else if (value instanceof JSONArray) {
-                map.putArray(key, convertJsonToArray((JSONArray) value));
-            } else if (value instanceof Boolean) {
-                map.putBoolean(key, (Boolean) value);
-            } else if (value instanceof Integer) {
-                map.putInt(key, (Integer) value);
-            } else if (value instanceof Double) {
-                map.putDouble(key, (Double) value);
-            } else if (value instanceof String) {
-                map.putString(key, (String) value);
-            } else {
-                map.putString(key, value.toString());
-            }
-        }
-        return map;
+    static WritableMap convertJsonToMap(JSONObject jsonObject) {
+        return mJsonConverter.toMap(jsonObject);
     }
 
-    private static WritableArray convertJsonToArray(JSONArray jsonArray) throws JSONException {
-        WritableArray array = Arguments.createArray();
-
-        for (int i = 0; i < jsonArray.length(); i++) {
-            Object value = jsonArray.get(i);
-            if (value instanceof JSONObject) {
-                array.pushMap(convertJsonToMap((JSONObject) value));
-            } else if (value instanceof JSONArray) {
-                array.pushArray(convertJsonToArray((JSONArray) value));
-            } else if (value instanceof Boolean) {
-                array.pushBoolean((Boolean) value);
-            } else if (value instanceof Integer) {
-                array.pushInt((Integer) value);
-            } else if (value instanceof Double) {
-                array.pushDouble((Double) value);
-            } else if (value instanceof String) {
-                array.pushString((String) value);
-            } else {
-                array.pushString(value.toString());
-            }
-        }
-        return array;
+    static WritableArray convertJsonToArray(JSONArray jsonArray) {
+        return mJsonConverter.toArray(jsonArray);
     }
 
 }
\ No newline at end of file
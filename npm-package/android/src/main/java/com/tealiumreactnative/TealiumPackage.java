@@ -13,6 +13,18 @@ import java.util.List;
  */
 
 public class TealiumPackage implements ReactPackage {
+
+    /**
+     * Same as {@link TealiumReactNative#registerRemoteCommandHandler}, for registering handlers where
+     * the package is added in MainApplication.getPackages().
+     */
+    public TealiumPackage addRemoteCommandHandler(String commandID,
+                                                  String description,
+                                                  NativeRemoteCommandHandler handler) {
+        TealiumReactNative.registerRemoteCommandHandler(commandID, description, handler);
+        return this;
+    }
+
     @Override
     public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
         List<NativeModule> modules = new ArrayList<>();
@@ -0,0 +1,149 @@
+package com.tealiumreactnative;
+
+import android.app.Application;
+import android.util.Log;
+
+import com.tealium.library.BuildConfig;
+import com.tealium.library.Tealium;
+import com.tealium.lifecycle.LifeCycle;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Native entry point for starting Tealium before the JS bundle has loaded.
+ *
+ * Call {@link #bootstrap(Application)} from MainApplication.onCreate to create the instance described
+ * by the bundled tealium.json asset. Later JS initialize calls for the same instance name attach to
+ * the bootstrapped instance instead of recreating it.
+ */
+public final class TealiumReactNative {
+
+    public static final String DEFAULT_CONFIG_ASSET = "tealium.json";
+    private static final String DEFAULT_INSTANCE_NAME = "MAIN";
+
+    // instance name -> whether LifeCycle was set up for it
+    private static final Map<String, Boolean> mBootstrappedInstances = new ConcurrentHashMap<>();
+    private static volatile String mDefaultInstanceName;
+
+    private TealiumReactNative() {
+    }
+
+    public static boolean bootstrap(Application application) {
+        return bootstrap(application, DEFAULT_CONFIG_ASSET);
+    }
+
+    /**
+     * Creates a Tealium instance from a JSON asset with the keys account, profile, environment and,
+     * optionally, instance, androidDatasource, lifecycle, consentManager, overridePublishSettingsUrl,
+     * overrideTagManagementUrl and collectEndpoint.
+     *
+     * @return true if the instance was created
+     */
+    public static boolean bootstrap(Application application, String assetName) {
+        final JSONObject settings;
+        try {
+            settings = new JSONObject(readAsset(application, assetName));
+        } catch (IOException e) {
+            Log.e(BuildConfig.TAG, "Bootstrap failed: could not read asset " + assetName, e);
+            return false;
+        } catch (JSONException e) {
+            Log.e(BuildConfig.TAG, "Bootstrap failed: invalid JSON in asset " + assetName, e);
+            return false;
+        }
+
+        final String account = optString(settings, "account", null);
+        final String profile = optString(settings, "profile", null);
+        final String environment = optString(settings, "environment", null);
+        if (account == null || profile == null || environment == null) {
+            Log.e(BuildConfig.TAG, "Bootstrap failed: account, profile, and environment must be provided in " + assetName);
+            return false;
+        }
+
+        final String instance = optString(settings, "instance", DEFAULT_INSTANCE_NAME);
+        final String androidDatasource = optString(settings, "androidDatasource", null);
+        final String overridePublishSettingsUrl = optString(settings, "overridePublishSettingsUrl", null);
+        final String overrideTagManagementUrl = optString(settings, "overrideTagManagementUrl", null);
+        final boolean isLifecycleEnabled = settings.optBoolean("lifecycle", true);
+
+        final Tealium.Config config = Tealium.Config.create(application, account, profile, environment);
+        if (androidDatasource != null) {
+            config.setDatasourceId(androidDatasource);
+        }
+        if (overridePublishSettingsUrl != null) {
+            config.setOverridePublishSettingsUrl(overridePublishSettingsUrl);
+        }
+        if (overrideTagManagementUrl != null) {
+            config.setOverrideTagManagementUrl(overrideTagManagementUrl);
+        }
+        if (!settings.optBoolean("collectEndpoint", true)) {
+            config.setVdataCollectEndpointEnabled(true);
+        }
+        if (settings.optBoolean("consentManager", false)) {
+            config.enableConsentManager(instance);
+            config.getEventListeners().add(TealiumModule.createConsentUpdateListener(instance));
+        }
+
+        if (isLifecycleEnabled) {
+            final boolean isAutoTracking = false;
+            LifeCycle.setupInstance(instance, config, isAutoTracking);
+        }
+
+        RemoteCommandHandlers.attach(instance, Tealium.createInstance(instance, config));
+        mBootstrappedInstances.put(instance, isLifecycleEnabled);
+        if (mDefaultInstanceName == null) {
+            mDefaultInstanceName = instance;
+        }
+        return true;
+    }
+
+    /**
+     * Handles the remote command natively for every Tealium instance, including instances created
+     * later. JS callbacks are never invoked for the command. Registering the same command ID again
+     * replaces the previous handler.
+     */
+    public static void registerRemoteCommandHandler(String commandID,
+                                                    String description,
+                                                    NativeRemoteCommandHandler handler) {
+        RemoteCommandHandlers.register(commandID, description, handler);
+    }
+
+    static boolean isBootstrapped(String instanceName) {
+        return instanceName != null
+                && mBootstrappedInstances.containsKey(instanceName)
+                && Tealium.getInstance(instanceName) != null;
+    }
+
+    static boolean isLifecycleBootstrapped(String instanceName) {
+        return Boolean.TRUE.equals(mBootstrappedInstances.get(instanceName));
+    }
+
+    static String getDefaultInstanceName() {
+        return mDefaultInstanceName;
+    }
+
+    /**
+     * Like JSONObject.optString, except that an explicit null yields fallback instead of "null".
+     */
+    private static String optString(JSONObject settings, String key, String fallback) {
+        return settings.isNull(key) ? fallback : settings.optString(key, fallback);
+    }
+
+    private static String readAsset(Application application, String assetName) throws IOException {
+        try (InputStream in = application.getAssets().open(assetName)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.tealiumreactnative;
+
+import android.util.Log;
+
+import com.tealium.library.BuildConfig;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tracking and data work off the React Native bridge thread.
+ *
+ * Tasks are handed over through a bounded, lock-free ring buffer and executed by a single consumer
+ * thread in the order they were enqueued. Droppable tasks (tracks) are subject to the configured
+ * OverflowPolicy when the buffer is full; non-droppable tasks (data setters and getters) always wait
+ * for space and are never evicted, so data changes are applied before any later track. Under
+ * DROP_OLDEST, a track that finds a data call at the head, which can't be evicted, is dropped
+ * itself rather than wait.
+ *
+ * Tasks enqueued by the consumer thread itself into a full buffer can't wait for space; they go to
+ * an overflow list that runs once everything enqueued before them has run.
+ *
+ * Tasks capture the ReadableMap and ReadableArray arguments of their bridge call and convert them
+ * on the consumer thread. React Native doesn't change or reuse those arguments once the call is
+ * made, and they may be read from any thread, so no copy is made on the bridge thread.
+ */
+final class TrackingDispatcher {
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        BLOCK;
+
+        static OverflowPolicy fromString(String policy) {
+            if ("dropOldest".equals(policy)) {
+                return DROP_OLDEST;
+            } else if ("dropNewest".equals(policy)) {
+                return DROP_NEWEST;
+            } else if ("block".equals(policy)) {
+                return BLOCK;
+            }
+            return null;
+        }
+    }
+
+    abstract static class Task implements Runnable {
+        final boolean mDroppable;
+
+        Task(boolean droppable) {
+            mDroppable = droppable;
+        }
+    }
+
+    private static final long IDLE_PARK_NANOS = 50_000_000L;
+    private static final long FULL_PARK_NANOS = 100_000L;
+
+    // Bounded MPMC ring buffer after Dmitry Vyukov: each slot carries a sequence number telling
+    // producers and consumers whether it is free for position p (seq == p) or holds p (seq == p + 1).
+    private final AtomicReferenceArray<Task> mBuffer;
+    private final AtomicLongArray mSequences;
+    private final int mMask;
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+
+    private final Thread mConsumer;
+    // consumer thread only: tasks it enqueued into a full buffer, each with the tail position at the time
+    private final ArrayDeque<Task> mOverflow = new ArrayDeque<>();
+    private final ArrayDeque<Long> mOverflowPositions = new ArrayDeque<>();
+    private final AtomicBoolean mConsumerParked = new AtomicBoolean();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private volatile OverflowPolicy mOverflowPolicy;
+
+    TrackingDispatcher(int capacity, OverflowPolicy overflowPolicy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mBuffer = new AtomicReferenceArray<>(size);
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+        mMask = size - 1;
+        mOverflowPolicy = overflowPolicy;
+
+        mConsumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "TealiumReactNativeDispatcher");
+        mConsumer.setDaemon(true);
+        mConsumer.start();
+    }
+
+    int getCapacity() {
+        return mMask + 1;
+    }
+
+    long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        mOverflowPolicy = overflowPolicy;
+    }
+
+    void enqueue(Task task) {
+        while (!offer(task)) {
+            final OverflowPolicy policy = task.mDroppable ? mOverflowPolicy : OverflowPolicy.BLOCK;
+            if (policy == OverflowPolicy.DROP_NEWEST) {
+                onDropped();
+                return;
+            }
+            if (policy == OverflowPolicy.DROP_OLDEST) {
+                if (!evictOldestDroppable()) {
+                    // the head is a data call, which is never evicted; drop the new track instead of waiting
+                    onDropped();
+                    return;
+                }
+                onDropped();
+                continue;
+            }
+            if (Thread.currentThread() == mConsumer) {
+                // waiting for ourselves to make room would never finish; run it after what is queued now
+                mOverflow.addLast(task);
+                mOverflowPositions.addLast(mTail.get());
+                return;
+            }
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+
+        if (mConsumerParked.get()) {
+            LockSupport.unpark(mConsumer);
+        }
+    }
+
+    private boolean offer(Task task) {
+        long pos = mTail.get();
+        for (; ; ) {
+            final int index = (int) (pos & mMask);
+            final long diff = mSequences.get(index) - pos;
+            if (diff == 0) {
+                if (mTail.compareAndSet(pos, pos + 1)) {
+                    mBuffer.set(index, task);
+                    mSequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = mTail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = mTail.get();
+            }
+        }
+    }
+
+    private Task poll() {
+        long pos = mHead.get();
+        for (; ; ) {
+            final int index = (int) (pos & mMask);
+            final long diff = mSequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (mHead.compareAndSet(pos, pos + 1)) {
+                    final Task task = mBuffer.get(index);
+                    mBuffer.set(index, null);
+                    mSequences.set(index, pos + mMask + 1);
+                    return task;
+                }
+                pos = mHead.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = mHead.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the head task if, and only if, it is droppable. The slot is inspected before claiming
+     * it; a successful CAS on the head proves nobody consumed (and so nobody refilled) it meanwhile.
+     */
+    private boolean evictOldestDroppable() {
+        final long pos = mHead.get();
+        final int index = (int) (pos & mMask);
+        if (mSequences.get(index) != pos + 1) {
+            return false;
+        }
+
+        final Task task = mBuffer.get(index);
+        if (task == null || !task.mDroppable || !mHead.compareAndSet(pos, pos + 1)) {
+            return false;
+        }
+
+        mBuffer.set(index, null);
+        mSequences.set(index, pos + mMask + 1);
+        return true;
+    }
+
+    private void consume() {
+        for (; ; ) {
+            if (!mOverflow.isEmpty() && mHead.get() >= mOverflowPositions.peekFirst()) {
+                mOverflowPositions.pollFirst();
+                execute(mOverflow.pollFirst());
+                continue;
+            }
+            Task task = poll();
+            if (task == null) {
+                mConsumerParked.set(true);
+                task = poll();
+                if (task == null) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    mConsumerParked.set(false);
+                    continue;
+                }
+                mConsumerParked.set(false);
+            }
+            execute(task);
+        }
+    }
+
+    private void execute(Task task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            Log.e(BuildConfig.TAG, "Tracking task failed", t);
+        }
+    }
+
+    private void onDropped() {
+        final long dropped = mDroppedCount.incrementAndGet();
+        if (dropped == 1 || dropped % 100 == 0) {
+            Log.w(BuildConfig.TAG, "Tracking queue full; " + dropped + " track calls dropped so far");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.tealiumreactnative;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Expiry rules for one instance's volatile data keys: a time to live, a number of tracks, or the
+ * next view.
+ *
+ * Time to live uses a hashed timer wheel: each key sits in the slot for its deadline tick, and
+ * advancing the wheel visits only the slots passed since the last advance, never more than one
+ * full turn. The wheel is advanced lazily, right before volatile data is read, so no timer runs
+ * while nothing is tracked. Not thread safe; only used on the dispatcher thread.
+ */
+final class VolatileDataExpiry {
+
+    static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private static final class Timer {
+        final String mKey;
+        final long mDeadline;
+        Timer mPrev;
+        Timer mNext;
+        int mSlot;
+
+        Timer(String key, long deadline) {
+            mKey = key;
+            mDeadline = deadline;
+        }
+    }
+
+    private final Timer[] mSlots = new Timer[WHEEL_SIZE];
+    private final Map<String, Timer> mTimers = new HashMap<>();
+    private final Map<String, Integer> mTracksRemaining = new HashMap<>();
+    private final Set<String> mViewScopedKeys = new HashSet<>();
+    private long mCurrentTick;
+
+    VolatileDataExpiry(long now) {
+        mCurrentTick = now / TICK_MILLIS;
+    }
+
+    /**
+     * Replaces any rule for the key. The key expires as soon as the first of the given limits is
+     * reached; a limit of zero or less is ignored.
+     *
+     * @param ttlMillis time to live
+     * @param tracks number of tracks the key is sent with
+     * @param untilNextView whether the key is dropped after the next view is sent
+     */
+    void schedule(String key, long ttlMillis, int tracks, boolean untilNextView, long now) {
+        cancel(key);
+
+        if (ttlMillis > 0) {
+            final Timer timer = new Timer(key, now + ttlMillis);
+            // round up so a key never expires before its deadline
+            final long tick = Math.max((timer.mDeadline + TICK_MILLIS - 1) / TICK_MILLIS, mCurrentTick + 1);
+            timer.mSlot = (int) (tick & WHEEL_MASK);
+            timer.mNext = mSlots[timer.mSlot];
+            if (timer.mNext != null) {
+                timer.mNext.mPrev = timer;
+            }
+            mSlots[timer.mSlot] = timer;
+            mTimers.put(key, timer);
+        }
+        if (tracks > 0) {
+            mTracksRemaining.put(key, tracks);
+        }
+        if (untilNextView) {
+            mViewScopedKeys.add(key);
+        }
+    }
+
+    void cancel(String key) {
+        final Timer timer = mTimers.remove(key);
+        if (timer != null) {
+            unlink(timer);
+        }
+        mTracksRemaining.remove(key);
+        mViewScopedKeys.remove(key);
+    }
+
+    void cancel(Collection<String> keys) {
+        if (isEmpty()) {
+            return;
+        }
+        for (String key : keys) {
+            cancel(key);
+        }
+    }
+
+    boolean isEmpty() {
+        return mTimers.isEmpty() && mTracksRemaining.isEmpty() && mViewScopedKeys.isEmpty();
+    }
+
+    /**
+     * Moves the wheel up to now and returns the keys whose time to live has passed.
+     */
+    List<String> advance(long now) {
+        final long targetTick = now / TICK_MILLIS;
+        if (mTimers.isEmpty() || targetTick <= mCurrentTick) {
+            mCurrentTick = Math.max(mCurrentTick, targetTick);
+            return Collections.emptyList();
+        }
+
+        List<String> expired = null;
+        final long ticks = Math.min(targetTick - mCurrentTick, WHEEL_SIZE);
+        for (long i = 1; i <= ticks; i++) {
+            Timer timer = mSlots[(int) ((mCurrentTick + i) & WHEEL_MASK)];
+            while (timer != null) {
+                final Timer next = timer.mNext;
+                // later turns of the wheel share the slot; leave those in place
+                if (timer.mDeadline <= now) {
+                    if (expired == null) {
+                        expired = new ArrayList<>();
+                    }
+                    expired.add(timer.mKey);
+                    cancel(timer.mKey);
+                }
+                timer = next;
+            }
+        }
+        mCurrentTick = targetTick;
+        return expired != null ? expired : Collections.<String>emptyList();
+    }
+
+    /**
+     * Counts a sent track against the track and view limits, returning the keys that are used up.
+     */
+    List<String> onTrack(boolean isView) {
+        if (mTracksRemaining.isEmpty() && (!isView || mViewScopedKeys.isEmpty())) {
+            return Collections.emptyList();
+        }
+
+        final List<String> expired = new ArrayList<>();
+        final Iterator<Map.Entry<String, Integer>> iterator = mTracksRemaining.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, Integer> entry = iterator.next();
+            if (entry.getValue() <= 1) {
+                expired.add(entry.getKey());
+            } else {
+                entry.setValue(entry.getValue() - 1);
+            }
+        }
+        if (isView) {
+            expired.addAll(mViewScopedKeys);
+        }
+        for (String key : expired) {
+            cancel(key);
+        }
+        return expired;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.mPrev != null) {
+            timer.mPrev.mNext = timer.mNext;
+        } else {
+            mSlots[timer.mSlot] = timer.mNext;
+        }
+        if (timer.mNext != null) {
+            timer.mNext.mPrev = timer.mPrev;
+        }
+        timer.mPrev = null;
+        timer.mNext = null;
+    }
+}
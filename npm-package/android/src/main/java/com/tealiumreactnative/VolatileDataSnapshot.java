@@ -0,0 +1,100 @@
+package com.tealiumreactnative;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copy-on-write volatile data for one instance.
+ *
+ * Updates are built on a private copy and published with a single reference swap, so a reader
+ * always sees either all or none of an update. Readers never lock; writers are serialized.
+ *
+ * The library's volatile data stays the source of truth: every update and removal is written
+ * through to it under the same lock, so events the library sends itself see the keys too, one
+ * key at a time. The snapshot is only a read cache that lets this module's tracks see an update
+ * whole.
+ */
+final class VolatileDataSnapshot {
+
+    private final Map<String, Object> mTarget;
+    private volatile Map<String, Object> mValues = Collections.emptyMap();
+    private long mVersion;
+
+    /**
+     * @param target the library's volatile data, which every change is written through to
+     */
+    VolatileDataSnapshot(Map<String, Object> target) {
+        mTarget = target;
+    }
+
+    /**
+     * Returns the current snapshot. The map is immutable and stays consistent however long it is held.
+     */
+    Map<String, Object> get() {
+        return mValues;
+    }
+
+    Object get(String key) {
+        return mValues.get(key);
+    }
+
+    boolean containsKey(String key) {
+        return mValues.containsKey(key);
+    }
+
+    /**
+     * Publishes the current values with the removals and then the puts applied, as one snapshot.
+     */
+    synchronized void update(Map<String, Object> puts, Collection<String> removals) {
+        final Map<String, Object> current = mValues;
+        final Map<String, Object> next = new HashMap<>(current.size() + (puts != null ? puts.size() : 0));
+        next.putAll(current);
+        if (removals != null) {
+            for (String key : removals) {
+                next.remove(key);
+                mTarget.remove(key);
+            }
+        }
+        if (puts != null) {
+            next.putAll(puts);
+            mTarget.putAll(puts);
+        }
+        mValues = Collections.unmodifiableMap(next);
+    }
+
+    /**
+     * Applies the update only if its version is newer than the last versioned update applied.
+     *
+     * @return false if the update was stale and nothing changed
+     */
+    synchronized boolean update(long version, Map<String, Object> puts, Collection<String> removals) {
+        if (version <= mVersion) {
+            return false;
+        }
+        update(puts, removals);
+        mVersion = version;
+        return true;
+    }
+
+    synchronized long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Drops the keys from the snapshot and the library's volatile data, skipping the copy when
+     * none of them are in the snapshot.
+     */
+    synchronized void remove(Collection<String> keys) {
+        for (String key : keys) {
+            if (mValues.containsKey(key)) {
+                update(null, keys);
+                return;
+            }
+        }
+        for (String key : keys) {
+            mTarget.remove(key);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.tealiumreactnative;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/**
+ * Timing loop for the JVM microbenchmarks.
+ *
+ * Benchmarks only run with -Dbenchmark=true, as in ./gradlew test -Dbenchmark=true, and print
+ * their results instead of asserting on them. Allocated bytes are reported where the JVM can
+ * count them per thread.
+ */
+final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    static boolean isEnabled() {
+        return Boolean.getBoolean("benchmark");
+    }
+
+    /**
+     * Runs op warmups times, then iterations times while measuring, and prints the time and
+     * bytes allocated per run.
+     *
+     * @return nanoseconds per run
+     */
+    static double run(String name, int warmups, int iterations, Runnable op) {
+        for (int i = 0; i < warmups; i++) {
+            op.run();
+        }
+
+        final long bytesBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run();
+        }
+        final double nanosPerOp = (System.nanoTime() - start) / (double) iterations;
+        final long bytesAfter = allocatedBytes();
+
+        final String bytes = bytesBefore >= 0 && bytesAfter >= 0
+                ? String.format(Locale.US, "%,d B/op", (bytesAfter - bytesBefore) / iterations)
+                : "allocations not available";
+        System.out.println(String.format(Locale.US, "%-48s %,12.1f us/op  %s", name, nanosPerOp / 1000, bytes));
+        return nanosPerOp;
+    }
+
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
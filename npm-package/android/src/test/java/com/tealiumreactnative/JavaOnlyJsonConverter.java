@@ -0,0 +1,22 @@
+package com.tealiumreactnative;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * JsonConverter filling Java-only bridge collections, as the native ones can't be loaded on the JVM.
+ */
+final class JavaOnlyJsonConverter extends JsonConverter {
+
+    @Override
+    WritableMap createMap() {
+        return new JavaOnlyMap();
+    }
+
+    @Override
+    WritableArray createArray() {
+        return new JavaOnlyArray();
+    }
+}
@@ -0,0 +1,127 @@
+package com.tealiumreactnative;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+/**
+ * Compares JsonConverter with the recursive conversion it replaced, on deep and on wide payloads.
+ * Run with ./gradlew test -Dbenchmark=true.
+ */
+public class JsonConverterBenchmark {
+
+    private static final int WARMUPS = 2000;
+    private static final int ITERATIONS = 5000;
+
+    private final JsonConverter mConverter = new JavaOnlyJsonConverter();
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Benchmarks.isEnabled());
+        mConverter.setLimits(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void deepPayload() throws Exception {
+        // as deep as the recursive version handles comfortably on a small stack
+        JSONObject json = new JSONObject().put("leaf", "value").put("count", 1);
+        for (int i = 0; i < 200; i++) {
+            json = new JSONObject().put("child", json).put("index", i).put("list", new JSONArray().put(i).put("x"));
+        }
+        compare("deep (200 levels)", json);
+    }
+
+    @Test
+    public void widePayload() throws Exception {
+        final JSONObject json = new JSONObject();
+        for (int i = 0; i < 2000; i++) {
+            json.put("key" + i, new JSONObject()
+                    .put("name", "item" + i)
+                    .put("price", i * 1.5)
+                    .put("quantity", i)
+                    .put("tags", new JSONArray().put("a").put("b").put(JSONObject.NULL)));
+        }
+        compare("wide (2000 keys x 4 values)", json);
+    }
+
+    private void compare(String name, final JSONObject json) {
+        Benchmarks.run(name + ", recursive", WARMUPS, ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    recursiveToMap(json);
+                } catch (JSONException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        Benchmarks.run(name + ", iterative", WARMUPS, ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                mConverter.toMap(json);
+            }
+        });
+    }
+
+    // the recursive conversion JsonConverter replaced, as a baseline
+
+    private static WritableMap recursiveToMap(JSONObject jsonObject) throws JSONException {
+        WritableMap map = new JavaOnlyMap();
+
+        Iterator<String> iterator = jsonObject.keys();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            Object value = jsonObject.get(key);
+            if (value instanceof JSONObject) {
+                map.putMap(key, recursiveToMap((JSONObject) value));
+            } else if (value instanceof JSONArray) {
+                map.putArray(key, recursiveToArray((JSONArray) value));
+            } else if (value instanceof Boolean) {
+                map.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Integer) {
+                map.putInt(key, (Integer) value);
+            } else if (value instanceof Double) {
+                map.putDouble(key, (Double) value);
+            } else if (value instanceof String) {
+                map.putString(key, (String) value);
+            } else {
+                map.putString(key, value.toString());
+            }
+        }
+        return map;
+    }
+
+    private static WritableArray recursiveToArray(JSONArray jsonArray) throws JSONException {
+        WritableArray array = new JavaOnlyArray();
+
+        for (int i = 0; i < jsonArray.length(); i++) {
+            Object value = jsonArray.get(i);
+            if (value instanceof JSONObject) {
+                array.pushMap(recursiveToMap((JSONObject) value));
+            } else if (value instanceof JSONArray) {
+                array.pushArray(recursiveToArray((JSONArray) value));
+            } else if (value instanceof Boolean) {
+                array.pushBoolean((Boolean) value);
+            } else if (value instanceof Integer) {
+                array.pushInt((Integer) value);
+            } else if (value instanceof Double) {
+                array.pushDouble((Double) value);
+            } else if (value instanceof String) {
+                array.pushString((String) value);
+            } else {
+                array.pushString(value.toString());
+            }
+        }
+        return array;
+    }
+}
@@ -0,0 +1,170 @@
+package com.tealiumreactnative;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonConverterTest {
+
+    private static final long TWO_TO_53 = 1L << 53;
+
+    private JsonConverter mConverter;
+
+    @Before
+    public void setUp() {
+        mConverter = new JavaOnlyJsonConverter();
+    }
+
+    @Test
+    public void convertsNestedObjectsAndArrays() throws Exception {
+        final JSONObject json = new JSONObject()
+                .put("name", "purchase")
+                .put("count", 3)
+                .put("enabled", true)
+                .put("price", 9.99)
+                .put("item", new JSONObject().put("sku", "A1"))
+                .put("tags", new JSONArray().put("a").put(new JSONObject().put("b", 1)).put(new JSONArray().put(2)));
+
+        final ReadableMap map = mConverter.toMap(json);
+
+        assertEquals("purchase", map.getString("name"));
+        assertEquals(3, map.getInt("count"));
+        assertTrue(map.getBoolean("enabled"));
+        assertEquals(9.99, map.getDouble("price"), 0);
+        assertEquals("A1", map.getMap("item").getString("sku"));
+        final ReadableArray tags = map.getArray("tags");
+        assertEquals(3, tags.size());
+        assertEquals("a", tags.getString(0));
+        assertEquals(1, tags.getMap(1).getInt("b"));
+        assertEquals(2, tags.getArray(2).getInt(0));
+    }
+
+    @Test
+    public void jsonNullBecomesNull() throws Exception {
+        final JSONObject json = new JSONObject()
+                .put("missing", JSONObject.NULL)
+                .put("list", new JSONArray().put(JSONObject.NULL));
+
+        final ReadableMap map = mConverter.toMap(json);
+
+        assertTrue(map.hasKey("missing"));
+        assertEquals(ReadableType.Null, map.getType("missing"));
+        assertEquals(ReadableType.Null, map.getArray("list").getType(0));
+    }
+
+    @Test
+    public void longsAJsNumberHoldsExactlyAreNumbers() throws Exception {
+        final JSONObject json = new JSONObject()
+                .put("max", TWO_TO_53)
+                .put("min", -TWO_TO_53)
+                .put("timestamp", 1571356800000L);
+
+        final ReadableMap map = mConverter.toMap(json);
+
+        assertEquals(ReadableType.Number, map.getType("max"));
+        assertEquals((double) TWO_TO_53, map.getDouble("max"), 0);
+        assertEquals((double) -TWO_TO_53, map.getDouble("min"), 0);
+        assertEquals(1571356800000d, map.getDouble("timestamp"), 0);
+    }
+
+    @Test
+    public void longsAbove2To53AreDecimalStrings() throws Exception {
+        final JSONObject json = new JSONObject()
+                .put("above", TWO_TO_53 + 1)
+                .put("below", -TWO_TO_53 - 1)
+                .put("max", Long.MAX_VALUE);
+        final JSONArray array = new JSONArray().put(TWO_TO_53 + 1);
+
+        final ReadableMap map = mConverter.toMap(json);
+
+        assertEquals("9007199254740993", map.getString("above"));
+        assertEquals("-9007199254740993", map.getString("below"));
+        assertEquals(String.valueOf(Long.MAX_VALUE), map.getString("max"));
+        assertEquals("9007199254740993", mConverter.toArray(array).getString(0));
+    }
+
+    @Test
+    public void bigNumbersKeepTheirPrecision() throws Exception {
+        final JSONObject json = new JSONObject()
+                .put("exact", new BigDecimal("0.5"))
+                .put("inexact", new BigDecimal("0.1000000000000000000001"))
+                .put("huge", new BigInteger("123456789012345678901234567890"));
+
+        final ReadableMap map = mConverter.toMap(json);
+
+        assertEquals(0.5, map.getDouble("exact"), 0);
+        assertEquals("0.1000000000000000000001", map.getString("inexact"));
+        assertEquals("123456789012345678901234567890", map.getString("huge"));
+    }
+
+    @Test
+    public void valuesDeeperThanTheMaxDepthAreDropped() throws Exception {
+        mConverter.setLimits(2, 0);
+        final JSONObject json = new JSONObject()
+                .put("level1", new JSONObject()
+                        .put("kept", "yes")
+                        .put("level2", new JSONObject().put("dropped", "yes")));
+
+        final ReadableMap map = mConverter.toMap(json);
+
+        final ReadableMap level1 = map.getMap("level1");
+        assertEquals("yes", level1.getString("kept"));
+        assertFalse(level1.hasKey("level2"));
+    }
+
+    @Test
+    public void conversionStopsAtTheMaxEntryCount() throws Exception {
+        mConverter.setLimits(0, 3);
+        final JSONArray json = new JSONArray();
+        for (int i = 0; i < 10; i++) {
+            json.put(i);
+        }
+
+        final ReadableArray array = mConverter.toArray(json);
+
+        assertEquals(3, array.size());
+        assertEquals(0, array.getInt(0));
+        assertEquals(2, array.getInt(2));
+    }
+
+    @Test
+    public void nestedValuesCountTowardsTheMaxEntryCount() throws Exception {
+        mConverter.setLimits(0, 4);
+        final JSONObject json = new JSONObject()
+                .put("list", new JSONArray().put(1).put(2).put(3).put(4).put(5));
+
+        final ReadableMap map = mConverter.toMap(json);
+
+        // the list itself is one entry
+        assertEquals(3, map.getArray("list").size());
+    }
+
+    @Test
+    public void deepNestingUsesNoCallStack() throws Exception {
+        final int depth = 20000;
+        mConverter.setLimits(depth + 1, depth + 1);
+        JSONArray json = new JSONArray().put("leaf");
+        for (int i = 0; i < depth; i++) {
+            json = new JSONArray().put(json);
+        }
+
+        ReadableArray array = mConverter.toArray(json);
+
+        for (int i = 0; i < depth; i++) {
+            array = array.getArray(0);
+        }
+        assertEquals("leaf", array.getString(0));
+    }
+}
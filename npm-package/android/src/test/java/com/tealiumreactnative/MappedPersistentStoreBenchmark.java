@@ -0,0 +1,110 @@
+package com.tealiumreactnative;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cold load and single-key write cost of the mapped store at the sizes it was built for. Run with
+ * ./gradlew test -Dbenchmark=true. The comparison with SharedPreferences needs a device; see
+ * PersistentDataLoadBenchmark under androidTest.
+ */
+public class MappedPersistentStoreBenchmark {
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue(Benchmarks.isEnabled());
+        mDirectory = File.createTempFile("mapped-store-benchmark", "");
+        mDirectory.delete();
+        mDirectory.mkdir();
+    }
+
+    @After
+    public void tearDown() {
+        if (mDirectory == null) {
+            return;
+        }
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void coldLoad() throws Exception {
+        for (int keyCount : new int[]{100, 1000, 5000}) {
+            final File file = new File(mDirectory, keyCount + ".log");
+            final MappedPersistentStore store = MappedPersistentStore.open(file);
+            store.putAll(values(keyCount));
+            store.close();
+
+            // closing forces the mapping to disk, so stores are only closed after the timed loop
+            final List<MappedPersistentStore> opened = new ArrayList<>();
+            Benchmarks.run("open " + keyCount + " keys", 20, 100, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        opened.add(MappedPersistentStore.open(file));
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            });
+            for (MappedPersistentStore openedStore : opened) {
+                openedStore.close();
+            }
+        }
+    }
+
+    @Test
+    public void singleKeyWrite() throws Exception {
+        final MappedPersistentStore store = MappedPersistentStore.open(new File(mDirectory, "write.log"));
+        store.putAll(values(5000));
+        final int[] counter = new int[1];
+
+        Benchmarks.run("put 1 key into 5000", 10000, 50000, new Runnable() {
+            @Override
+            public void run() {
+                final int i = counter[0]++;
+                try {
+                    store.putAll(Collections.<String, Object>singletonMap("flag_" + i % 5000, i % 2 == 0));
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        store.close();
+    }
+
+    static Map<String, Object> values(int count) {
+        final Map<String, Object> values = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            switch (i % 3) {
+                case 0:
+                    values.put("flag_" + i, i % 2 == 0);
+                    break;
+                case 1:
+                    values.put("audience_" + i, "segment-" + i);
+                    break;
+                default:
+                    values.put("count_" + i, (long) i);
+                    break;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,191 @@
+package com.tealiumreactnative;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MappedPersistentStoreTest {
+
+    private File mDirectory;
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("mapped-store", "");
+        assertTrue(mDirectory.delete() && mDirectory.mkdir());
+        mFile = new File(mDirectory, "test.log");
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void valuesSurviveReopening() throws Exception {
+        final Map<String, Object> values = new HashMap<>();
+        values.put("string", "value");
+        values.put("set", new HashSet<>(Arrays.asList("a", "b")));
+        values.put("boolean", true);
+        values.put("long", 9007199254740993L);
+        values.put("double", 0.1);
+        values.put("map", new JSONObject().put("nested", new JSONArray().put(1).put("two")));
+        values.put("list", new JSONArray().put(1L).put(JSONObject.NULL));
+
+        MappedPersistentStore store = MappedPersistentStore.open(mFile);
+        store.putAll(values);
+        store.remove("boolean");
+        store.close();
+
+        store = MappedPersistentStore.open(mFile);
+        assertEquals(6, store.size());
+        assertEquals("value", store.get("string"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), store.get("set"));
+        assertFalse(store.contains("boolean"));
+        assertEquals(9007199254740993L, store.get("long"));
+        assertEquals(0.1, store.get("double"));
+        assertEquals("{\"nested\":[1,\"two\"]}", store.get("map").toString());
+        assertEquals("[1,null]", store.get("list").toString());
+        store.close();
+    }
+
+    @Test
+    public void snapshotSendsSetsAndArraysAsLists() throws Exception {
+        final MappedPersistentStore store = MappedPersistentStore.open(mFile);
+        store.putAll(Collections.<String, Object>singletonMap("list", new JSONArray().put("a").put("b")));
+
+        assertEquals(Arrays.asList("a", "b"), store.getSnapshot().get("list"));
+        store.putAll(Collections.<String, Object>singletonMap("other", "value"));
+        assertEquals("value", store.getSnapshot().get("other"));
+        store.close();
+    }
+
+    @Test
+    public void corruptTailIsDiscardedAndOverwritten() throws Exception {
+        MappedPersistentStore store = MappedPersistentStore.open(mFile);
+        store.putAll(Collections.<String, Object>singletonMap("kept", "value"));
+        final long endOfFirstRecord = recordEnd();
+        store.putAll(Collections.<String, Object>singletonMap("lost", "value"));
+        store.close();
+
+        // flip a payload byte of the second record so its checksum no longer matches
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            final long position = endOfFirstRecord + 8 + 2;
+            file.seek(position);
+            final int original = file.read();
+            file.seek(position);
+            file.write(original ^ 0xFF);
+        }
+
+        store = MappedPersistentStore.open(mFile);
+        assertEquals("value", store.get("kept"));
+        assertNull(store.get("lost"));
+        store.putAll(Collections.<String, Object>singletonMap("after", "value"));
+        store.close();
+
+        store = MappedPersistentStore.open(mFile);
+        assertEquals(2, store.size());
+        assertEquals("value", store.get("after"));
+        store.close();
+    }
+
+    @Test
+    public void truncatedFileKeepsCompleteRecords() throws Exception {
+        MappedPersistentStore store = MappedPersistentStore.open(mFile);
+        store.putAll(Collections.<String, Object>singletonMap("kept", "value"));
+        final long endOfFirstRecord = recordEnd();
+        store.putAll(Collections.<String, Object>singletonMap("lost", "a longer value that is cut off"));
+        store.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.setLength(endOfFirstRecord + 12);
+        }
+
+        store = MappedPersistentStore.open(mFile);
+        assertEquals(1, store.size());
+        assertEquals("value", store.get("kept"));
+        store.close();
+    }
+
+    @Test
+    public void unrecognizedFileStartsEmpty() throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.write("not a persistent store".getBytes("UTF-8"));
+        }
+
+        final MappedPersistentStore store = MappedPersistentStore.open(mFile);
+        assertEquals(0, store.size());
+        store.close();
+    }
+
+    @Test
+    public void compactionKeepsOnlyLiveValues() throws Exception {
+        MappedPersistentStore store = MappedPersistentStore.open(mFile);
+        final StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            padding.append('x');
+        }
+        // overwrite the same few keys until dead records force a compaction
+        for (int i = 0; i < 5000; i++) {
+            store.putAll(Collections.<String, Object>singletonMap("key" + (i % 10), padding.toString() + i));
+        }
+        final long liveBytes = store.getLiveBytes();
+        store.close();
+
+        assertTrue("log was never compacted", mFile.length() < 5000L * 200);
+        store = MappedPersistentStore.open(mFile);
+        assertEquals(10, store.size());
+        assertEquals(padding.toString() + 4999, store.get("key9"));
+        assertEquals(liveBytes, store.getLiveBytes());
+        store.close();
+        assertFalse(new File(mFile.getPath() + ".compact").exists());
+    }
+
+    @Test
+    public void fileNamesAreSafeAndDistinct() {
+        assertEquals("main.log", MappedPersistentStore.fileFor(mDirectory, "main").getName());
+        final String unsafe = MappedPersistentStore.fileFor(mDirectory, "a/b").getName();
+        final String similar = MappedPersistentStore.fileFor(mDirectory, "a_b").getName();
+        assertFalse(unsafe.contains("/"));
+        assertFalse(unsafe.equals(similar));
+    }
+
+    /**
+     * Returns where the records written so far end, from the header and record lengths on disk.
+     */
+    private long recordEnd() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "r")) {
+            long position = 8;
+            while (true) {
+                file.seek(position);
+                final int length = file.readInt();
+                if (length == 0) {
+                    return position;
+                }
+                position += 8 + length;
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.tealiumreactnative;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import org.json.JSONObject;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares PayloadConverter with the toHashMap and convertMapsToJson conversion it replaced, on a
+ * typical flat event and on a nested one. Run with ./gradlew test -Dbenchmark=true.
+ *
+ * The baseline copies the bridge data the way ReadableNativeMap.toHashMap does, but without the
+ * JNI calls it makes per value, so on a device the gap is at least as large as reported here.
+ */
+public class PayloadConverterBenchmark {
+
+    private static final int WARMUPS = 20000;
+    private static final int ITERATIONS = 50000;
+
+    private final PayloadConverter mConverter = new PayloadConverter();
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(Benchmarks.isEnabled());
+    }
+
+    @Test
+    public void flatEvent() {
+        final JavaOnlyMap data = new JavaOnlyMap();
+        for (int i = 0; i < 20; i++) {
+            data.putString("string_" + i, "value " + i);
+            data.putDouble("number_" + i, i * 1.5);
+        }
+        data.putBoolean("flag", true);
+        compare("flat event (41 values)", data);
+    }
+
+    @Test
+    public void nestedEvent() {
+        final JavaOnlyMap data = new JavaOnlyMap();
+        data.putString("tealium_event", "purchase");
+        final JavaOnlyArray products = new JavaOnlyArray();
+        for (int i = 0; i < 10; i++) {
+            final JavaOnlyMap product = new JavaOnlyMap();
+            product.putString("id", "sku-" + i);
+            product.putDouble("price", 9.99 + i);
+            product.putDouble("quantity", i + 1);
+            product.putArray("categories", JavaOnlyArray.of("clothing", "shoes"));
+            products.pushMap(product);
+        }
+        data.putArray("products", products);
+        final JavaOnlyMap customer = new JavaOnlyMap();
+        customer.putString("id", "c-1");
+        customer.putMap("address", JavaOnlyMap.of("city", "San Diego", "zip", "92121"));
+        data.putMap("customer", customer);
+        compare("nested event (10 products)", data);
+    }
+
+    private void compare(String name, final ReadableMap data) {
+        Benchmarks.run(name + ", toHashMap", WARMUPS, ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                convertMapsToJson(toHashMap(data));
+            }
+        });
+        Benchmarks.run(name + ", single pass", WARMUPS, ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                mConverter.toPayload(data);
+            }
+        });
+    }
+
+    // the conversion PayloadConverter replaced, as a baseline
+
+    private static Map<String, Object> convertMapsToJson(Map<String, Object> mapData) {
+        for (String key : mapData.keySet()) {
+            if (mapData.get(key) instanceof Map) {
+                mapData.put(key, new JSONObject((Map) mapData.get(key)));
+            }
+        }
+        return mapData;
+    }
+
+    private static HashMap<String, Object> toHashMap(ReadableMap map) {
+        final HashMap<String, Object> hashMap = new HashMap<>();
+        final ReadableMapKeySetIterator iterator = map.keySetIterator();
+        while (iterator.hasNextKey()) {
+            final String key = iterator.nextKey();
+            switch (map.getType(key)) {
+                case Null:
+                    hashMap.put(key, null);
+                    break;
+                case Boolean:
+                    hashMap.put(key, map.getBoolean(key));
+                    break;
+                case Number:
+                    hashMap.put(key, map.getDouble(key));
+                    break;
+                case String:
+                    hashMap.put(key, map.getString(key));
+                    break;
+                case Map:
+                    hashMap.put(key, toHashMap(map.getMap(key)));
+                    break;
+                case Array:
+                    hashMap.put(key, toArrayList(map.getArray(key)));
+                    break;
+            }
+        }
+        return hashMap;
+    }
+
+    private static List<Object> toArrayList(ReadableArray array) {
+        final List<Object> list = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            switch (array.getType(i)) {
+                case Null:
+                    list.add(null);
+                    break;
+                case Boolean:
+                    list.add(array.getBoolean(i));
+                    break;
+                case Number:
+                    list.add(array.getDouble(i));
+                    break;
+                case String:
+                    list.add(array.getString(i));
+                    break;
+                case Map:
+                    list.add(toHashMap(array.getMap(i)));
+                    break;
+                case Array:
+                    list.add(toArrayList(array.getArray(i)));
+                    break;
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,135 @@
+package com.tealiumreactnative;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PayloadConverterTest {
+
+    private final PayloadConverter mConverter = new PayloadConverter();
+
+    @Test
+    public void topLevelValuesKeepTheirTypes() {
+        final JavaOnlyMap data = JavaOnlyMap.of(
+                "string", "value",
+                "number", 5,
+                "fraction", 1.5,
+                "flag", true,
+                "array", JavaOnlyArray.of("a", 1),
+                "map", JavaOnlyMap.of("key", "value"));
+
+        final Map<String, Object> payload = mConverter.toPayload(data);
+
+        assertEquals("value", payload.get("string"));
+        assertEquals(5.0, payload.get("number"));
+        assertEquals(1.5, payload.get("fraction"));
+        assertEquals(true, payload.get("flag"));
+        assertEquals(Arrays.<Object>asList("a", 1.0), payload.get("array"));
+        assertEquals("value", ((JSONObject) payload.get("map")).getString("key"));
+    }
+
+    @Test
+    public void nestedMapsBecomeJsonAtEveryDepth() throws Exception {
+        final JavaOnlyMap data = JavaOnlyMap.of(
+                "array", JavaOnlyArray.of(JavaOnlyMap.of("inner", JavaOnlyArray.of(JavaOnlyMap.of("leaf", "x")))));
+
+        final List<?> array = (List<?>) mConverter.toPayload(data).get("array");
+        final JSONObject first = (JSONObject) array.get(0);
+        final JSONArray inner = first.getJSONArray("inner");
+        assertEquals("x", inner.getJSONObject(0).getString("leaf"));
+    }
+
+    @Test
+    public void nullsAreKeptAtTheTopAndJsonNullBelow() throws Exception {
+        final JavaOnlyMap data = JavaOnlyMap.of(
+                "missing", null,
+                "map", JavaOnlyMap.of("missing", null),
+                "array", JavaOnlyArray.of(JavaOnlyArray.of((Object) null)));
+
+        final Map<String, Object> payload = mConverter.toPayload(data);
+
+        assertTrue(payload.containsKey("missing"));
+        assertNull(payload.get("missing"));
+        assertSame(JSONObject.NULL, ((JSONObject) payload.get("map")).get("missing"));
+        assertSame(JSONObject.NULL, ((JSONArray) ((List<?>) payload.get("array")).get(0)).get(0));
+    }
+
+    @Test
+    public void dataValuesTypeWholeNumbersAsLongAtEveryDepth() throws Exception {
+        final JavaOnlyMap data = JavaOnlyMap.of(
+                "number", 5,
+                "fraction", 1.5,
+                "array", JavaOnlyArray.of(7, JavaOnlyArray.of(8)),
+                "map", JavaOnlyMap.of("count", 9, "list", JavaOnlyArray.of(10)));
+
+        final Map<String, Object> values = mConverter.toDataValues(data);
+
+        assertEquals(5L, values.get("number"));
+        assertEquals(1.5, values.get("fraction"));
+        final List<?> array = (List<?>) values.get("array");
+        assertEquals(7L, array.get(0));
+        assertEquals(8L, ((JSONArray) array.get(1)).get(0));
+        final JSONObject map = (JSONObject) values.get("map");
+        assertEquals(9L, map.get("count"));
+        assertEquals(10L, map.getJSONArray("list").get(0));
+    }
+
+    @Test
+    public void wholeNumbersBeyondSafeIntegerStayDouble() {
+        final double unsafe = Math.pow(2, 53) + 2;
+        final JavaOnlyMap data = JavaOnlyMap.of("safe", Math.pow(2, 53) - 1, "unsafe", unsafe);
+
+        final Map<String, Object> values = mConverter.toDataValues(data);
+
+        assertEquals(9007199254740991L, values.get("safe"));
+        assertEquals(unsafe, values.get("unsafe"));
+    }
+
+    @Test
+    public void valuesDeeperThanMaxDepthAreDropped() throws Exception {
+        mConverter.setLimits(3, PayloadConverter.DEFAULT_MAX_ENTRIES);
+        final JavaOnlyMap data = JavaOnlyMap.of(
+                "level1", JavaOnlyMap.of("level2", JavaOnlyMap.of("level3", JavaOnlyMap.of("level4", "x")), "kept", "y"));
+
+        final JSONObject level1 = (JSONObject) mConverter.toPayload(data).get("level1");
+
+        assertEquals("y", level1.getString("kept"));
+        final JSONObject level2 = level1.getJSONObject("level2");
+        assertFalse(level2.has("level3"));
+    }
+
+    @Test
+    public void conversionStopsAtMaxEntries() {
+        mConverter.setLimits(PayloadConverter.DEFAULT_MAX_DEPTH, 3);
+        final JavaOnlyMap data = new JavaOnlyMap();
+        for (int i = 0; i < 10; i++) {
+            data.putString("key" + i, "value");
+        }
+
+        assertEquals(3, mConverter.toPayload(data).size());
+    }
+
+    @Test
+    public void invalidLimitsFallBackToDefaults() {
+        mConverter.setLimits(0, -1);
+        final JavaOnlyMap data = new JavaOnlyMap();
+        for (int i = 0; i < 100; i++) {
+            data.putString("key" + i, "value");
+        }
+
+        assertEquals(100, mConverter.toPayload(data).size());
+    }
+}
@@ -0,0 +1,89 @@
+package com.tealiumreactnative;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PendingTaskBufferTest {
+
+    private static final class TestTask extends TrackingDispatcher.Task {
+        TestTask(boolean droppable) {
+            super(droppable);
+        }
+
+        @Override
+        public void run() {
+        }
+    }
+
+    @Test
+    public void fullBufferDropsOldestTrack() {
+        final PendingTaskBuffer<TestTask> buffer = new PendingTaskBuffer<>(2);
+        final TestTask track = new TestTask(true);
+        final TestTask setter = new TestTask(false);
+        assertNull(buffer.add(track, 0));
+        assertNull(buffer.add(setter, 0));
+
+        final TestTask next = new TestTask(true);
+        assertSame(track, buffer.add(next, 0));
+        assertSame(setter, buffer.poll());
+        assertSame(next, buffer.poll());
+        assertEquals(1, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void trackWithNothingToDropIsDroppedItself() {
+        final PendingTaskBuffer<TestTask> buffer = new PendingTaskBuffer<>(1);
+        buffer.add(new TestTask(false), 0);
+
+        final TestTask track = new TestTask(true);
+        assertSame(track, buffer.add(track, 0));
+        assertEquals(1, buffer.getPendingCount());
+    }
+
+    @Test
+    public void settersGrowPastCapacityUpToHardLimit() {
+        final int capacity = 4;
+        final PendingTaskBuffer<TestTask> buffer = new PendingTaskBuffer<>(capacity);
+        for (int i = 0; i < capacity * PendingTaskBuffer.HARD_CAPACITY_FACTOR; i++) {
+            assertNull(buffer.add(new TestTask(false), 0));
+        }
+
+        final TestTask rejected = new TestTask(false);
+        assertSame(rejected, buffer.add(rejected, 0));
+        assertEquals(capacity * PendingTaskBuffer.HARD_CAPACITY_FACTOR, buffer.getPendingCount());
+        assertEquals(1, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void expiresFromWhenItStoppedBeingEmpty() {
+        final PendingTaskBuffer<TestTask> buffer = new PendingTaskBuffer<>(10);
+        assertFalse(buffer.isExpired(1000, 100));
+
+        buffer.add(new TestTask(false), 1000);
+        buffer.add(new TestTask(false), 1050);
+        assertFalse(buffer.isExpired(1099, 100));
+        assertTrue(buffer.isExpired(1100, 100));
+
+        buffer.poll();
+        buffer.poll();
+        buffer.add(new TestTask(false), 2000);
+        assertFalse(buffer.isExpired(2050, 100));
+    }
+
+    @Test
+    public void clearDropsEverything() {
+        final PendingTaskBuffer<TestTask> buffer = new PendingTaskBuffer<>(10);
+        buffer.add(new TestTask(true), 0);
+        buffer.add(new TestTask(false), 0);
+
+        assertEquals(2, buffer.clear().size());
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getPendingCount());
+        assertFalse(buffer.isExpired(Long.MAX_VALUE, 0));
+    }
+}
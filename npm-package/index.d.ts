@@ -3,11 +3,76 @@
 declare module 'tealium-react-native' {
   export type TealiumData = { [key: string]: string | string[] };
 
+  /** Values that volatile and persistent data keep natively on Android; null removes the key */
+  export type TealiumDataValue =
+    | string
+    | number
+    | boolean
+    | null
+    | TealiumDataValue[]
+    | { [key: string]: TealiumDataValue };
+
+  export type TealiumTypedData = { [key: string]: TealiumDataValue };
+
   /** 0 - Unknown, 1 - Consented, 2 - Not Consented, 3 - Disabled (Objective-C Only) */
   export type TealiumUserConsentStatus = 0 | 1 | 2 | 3;
 
+  export type ConsentGateStats = {
+    decision: 'open' | 'undecided' | 'denied' | 'none';
+    /** Track calls queued now, waiting for the user to decide */
+    pending: number;
+    queued: number;
+    /** Queued track calls sent once the user consented */
+    released: number;
+    /** Track calls dropped, or queued and discarded, because consent was missing */
+    discarded: number;
+    /** Queued track calls dropped because the queue was full */
+    overflowed: number;
+  };
+
   export type remoteCommandEmitter = { NativeEventEmitter };
 
+  export type VolatileDataExpiry = {
+    /** Time to live in milliseconds */
+    ttl?: number;
+    /**
+     * Number of events or views the keys are sent with. Only tracks sent through this module are counted;
+     * events the library sends itself, such as lifecycle events, also get the keys until they expire.
+     */
+    events?: number;
+    /** Remove the keys after they have been sent with the next view sent through this module */
+    nextView?: boolean;
+  };
+
+  export type RemoteCommandMetrics = {
+    inFlight: number;
+    completed: number;
+    timedOut: number;
+    /** Invocations answered with status 503 because too many were waiting, or dropped before reaching JS */
+    rejected: number;
+    /** From when the payload reached JS to its response */
+    averageRoundTripTime: number;
+    maxRoundTripTime: number;
+    /** Payloads currently held because JS is not ready to receive them */
+    pendingDelivery: number;
+    heldForDelivery: number;
+    /** Held payloads dropped because the queue was full */
+    droppedBeforeDelivery: number;
+  };
+
+  export type PersistentDataBackend = 'sharedPreferences' | 'mappedFile';
+
+  export type PersistentDataStats = {
+    backend: PersistentDataBackend;
+    keyCount: number;
+    /** Cold load time of the mapped file (mappedFile only) */
+    loadTime?: number;
+    fileSize?: number;
+    liveBytes?: number;
+    /** Time to copy all SharedPreferences values (sharedPreferences only) */
+    readAllTime?: number;
+  };
+
   export default Tealium;
   class Tealium {
     /**
@@ -70,6 +135,38 @@ declare module 'tealium-react-native' {
       enableConsentManager = boolean,
     ): void;
 
+    /**
+     * Initialize Tealium without blocking the main or bridge threads. Takes the same options as initializeCustom.
+     * Tracking, data, consent and remote command calls made before the promise resolves are queued and applied once the
+     * instance is ready.
+     * On iOS this falls back to initializeCustom and resolves immediately.
+     * @param account Tealium account name
+     * @param profile Tealium profile name (default: “main”)
+     * @param environment Tealium environment
+     * @param iosDataSource A data source key from UDH eg. “abc123”
+     * @param androidDataSource A data source key from UDH eg. “def456”
+     * @param instance Name of Tealium instance (default: “MAIN”)
+     * @param enableLifeCycle To enable life cycle tracking (default: true)
+     * @param overridePublishSettingsUrl String representing the publish settings URL if overriding, otherwise null (default: null)
+     * @param overrideTagManagementUrl String representing the tag management URL if overriding, otherwise null (default: null)
+     * @param enableCollectEndpoint True sends data to the Collect endpoint (default: true)
+     * @param enableConsentManager True enables Consent Management (default: false)
+     * @returns A promise resolving with the instance name and, on Android, its handle and the queue and initialization times in milliseconds
+     */
+    static initializeAsync(
+      account: string,
+      profile: string,
+      environment: string,
+      iosDataSource?: string,
+      androidDataSource?: string,
+      instance?: string,
+      enableLifeCycle?: boolean,
+      overridePublishSettingsUrl?: string,
+      overrideTagManagementUrl?: string,
+      enableCollectEndpoint?: boolean,
+      enableConsentManager?: boolean,
+    ): Promise<{ instanceName: string; handle?: number; queueTime?: number; initializationTime?: number }>;
+
     /**
      * Track an event, where the title is a string and the data is a JSON object of key-value pairs where keys are strings and the values are either a string or array of strings.
      * @param eventName Name of event (becomes the event_name attribute in UDH)
@@ -110,12 +207,143 @@ declare module 'tealium-react-native' {
       data: TealiumData,
     ): void;
 
+    /**
+     * Configures the native queue that runs tracking and data calls off the bridge thread.
+     * Capacity only takes effect before the first call is queued. Data calls are never dropped;
+     * with “dropOldest”, a track call that finds the oldest pending call is a data call is dropped
+     * itself. Android only.
+     * @param capacity Maximum number of pending calls (default: 1024)
+     * @param overflowPolicy What happens to track calls when the queue is full (default: “dropOldest”)
+     */
+    static configureTrackingQueue(
+      capacity: number,
+      overflowPolicy?: 'dropOldest' | 'dropNewest' | 'block',
+    ): void;
+
+    /**
+     * Gets the counters of the buffer that holds calls made before the instance finished initializing.
+     * When it is full the oldest track call is dropped; data calls are kept past the capacity of 100 up to 1000
+     * calls, after which they are rejected. Calls still buffered when the instance is destroyed, or a minute after
+     * buffering started for an instance that is never created, are dropped, their callbacks invoked without a value
+     * and their promises rejected. Android only.
+     * @param instanceName Name of the Tealium instance
+     * @param callback A callback with a single parameter holding the buffered, replayed, dropped and pending counts
+     */
+    static getPendingCallStats(
+      instanceName: string,
+      callback: (stats: { buffered: number; replayed: number; dropped: number; pending: number }) => {},
+    ): void;
+
+    /**
+     * Sets the longest the autotracked launch event waits for a new instance to report ready once the app is in
+     * the foreground and the instance is created; it is sent as soon as the instance is ready otherwise. Call before
+     * initializing. Android only.
+     * The launch event carries the time from process start, or from module creation after a JS reload, in
+     * `lifecycle_launch_latency_ms`.
+     * @param timeoutMillis Maximum wait in milliseconds (default: 700)
+     */
+    static setLaunchTimeout(timeoutMillis: number): void;
+
+    /**
+     * Limits the nesting depth and total number of values converted per event or view payload. Values beyond the limits are dropped.
+     * Android only.
+     * @param maxDepth Maximum nesting depth of maps and arrays (default: 16)
+     * @param maxEntries Maximum number of values converted per payload (default: 10000)
+     */
+    static setPayloadLimits(maxDepth: number, maxEntries: number): void;
+
+    /**
+     * Limits the native payloads sent to JS, such as remote command payloads. Values nested deeper than maxDepth
+     * are dropped, and conversion stops after maxEntries values. Android only.
+     * @param maxDepth Maximum nesting depth (default: 32)
+     * @param maxEntries Maximum number of values converted per payload (default: 10000)
+     */
+    static setNativePayloadLimits(maxDepth: number, maxEntries: number): void;
+
+    /**
+     * Batches subsequent track calls and sends them across the bridge once per frame, or as soon as maxBatchSize calls are pending.
+     * Pending calls are also sent before any other call into the native module, and when the app goes to the background.
+     * Android only; returns false when the native module does not support batching.
+     * @param maxBatchSize Number of pending track calls that triggers an immediate flush (default: 20)
+     */
+    static enableTrackBatching(maxBatchSize?: number): boolean;
+
+    /**
+     * Sends any pending batched track calls and stops batching.
+     */
+    static disableTrackBatching(): void;
+
+    /**
+     * Sends any pending batched track calls immediately.
+     */
+    static flushTrackBatch(): void;
+
+    /**
+     * Gets the integer handle of an initialized instance. The ForHandle methods skip the instance name lookup on every call.
+     * A handle stops working once its instance is destroyed or re-initialized. Android only.
+     * @param instanceName Name of the Tealium instance
+     * @returns A promise resolving with the handle, rejected if the instance has not been initialized or on other platforms
+     */
+    static getInstanceHandle(instanceName: string): Promise<number>;
+
+    /**
+     * Destroys a Tealium instance and invalidates its handle. Android only.
+     * @param instanceName Name of the Tealium instance
+     */
+    static destroyInstance(instanceName: string): void;
+
+    /**
+     * Same as trackEventForInstanceName, using an instance handle. Android only.
+     * @param handle Handle of the Tealium instance
+     * @param eventName Name of event (becomes the event_name attribute in UDH)
+     * @param data JSON object of key value pairs
+     */
+    static trackEventForHandle(handle: number, eventName: string, data: TealiumData): void;
+
+    /**
+     * Same as trackViewForInstanceName, using an instance handle. Android only.
+     * @param handle Handle of the Tealium instance
+     * @param screenName Name of event (becomes the screen_title attribute in UDH)
+     * @param data JSON object of key value pairs
+     */
+    static trackViewForHandle(handle: number, screenName: string, data: TealiumData): void;
+
+    /**
+     * Same as setVolatileDataForInstanceName, using an instance handle. Android only.
+     * @param handle Handle of the Tealium instance
+     * @param data JSON object of key value pairs
+     */
+    static setVolatileDataForHandle(handle: number, data: TealiumTypedData): void;
+
+    /**
+     * Same as setPersistentDataForInstanceName, using an instance handle. Android only.
+     * @param handle Handle of the Tealium instance
+     * @param data JSON object of key value pairs
+     */
+    static setPersistentDataForHandle(handle: number, data: TealiumTypedData): void;
+
+    /**
+     * Same as removeVolatileDataForInstanceName, using an instance handle. Android only.
+     * @param handle Handle of the Tealium instance
+     * @param keys Array of key names
+     */
+    static removeVolatileDataForHandle(handle: number, keys: string[]): void;
+
+    /**
+     * Same as removePersistentDataForInstanceName, using an instance handle. Android only.
+     * @param handle Handle of the Tealium instance
+     * @param keys Array of key names
+     */
+    static removePersistentDataForHandle(handle: number, keys: string[]): void;
+
     /**
      * Set volatile data to be sent with each subsequent event or view until the app is terminated,
      * where data is a JSON object of key-value pairs where keys are strings and the values are either a string or array of strings.
+     * On Android, numbers, booleans and nested objects are also kept natively, and null removes the key.
      * @param data JSON object of key value pairs
+     * @param expiry Optional rule that removes the keys natively once any of its limits is reached. Android only.
      */
-    static setVolatileData(data: TealiumData): void;
+    static setVolatileData(data: TealiumTypedData, expiry?: VolatileDataExpiry): void;
 
     /**
      * Set volatile data to be sent with each subsequent event or view until the app is terminated,
@@ -123,10 +351,12 @@ declare module 'tealium-react-native' {
      * This method should be used if you have multiple instances of Tealium in your app.
      * @param instanceName Name of the Tealium instance
      * @param data JSON object of key value pairs
+     * @param expiry Optional rule that removes the keys natively once any of its limits is reached. Android only.
      */
     static setVolatileDataForInstanceName(
       instanceName: string,
-      data: TealiumData,
+      data: TealiumTypedData,
+      expiry?: VolatileDataExpiry,
     ): void;
 
     /**
@@ -136,7 +366,7 @@ declare module 'tealium-react-native' {
      */
     static getVolatileData(
       key: string,
-      callback: (value: string | string[]) => {},
+      callback: (value: TealiumDataValue) => {},
     ): void;
 
     /**
@@ -148,15 +378,77 @@ declare module 'tealium-react-native' {
     static getVolatileDataForInstanceName(
       instanceName: string,
       key: string,
-      callback: (value: string | string[]) => {},
+      callback: (value: TealiumDataValue) => {},
+    ): void;
+
+    /**
+     * Sets and removes volatile data in one update that is applied completely or not at all. Android only.
+     * Events and views sent through this module never see part of an update; events the library
+     * sends itself, such as lifecycle events, may see the keys change one at a time.
+     * @param data JSON object of key value pairs to set
+     * @param removeKeys Array of key names to remove
+     */
+    static updateVolatileData(data: TealiumTypedData, removeKeys?: string[]): void;
+
+    /**
+     * Sets and removes volatile data in one update that is applied completely or not at all. Android only.
+     * This method should be used if you have multiple instances of Tealium in your app.
+     * @param instanceName Name of the Tealium instance
+     * @param data JSON object of key value pairs to set
+     * @param removeKeys Array of key names to remove
+     */
+    static updateVolatileDataForInstanceName(
+      instanceName: string,
+      data: TealiumTypedData,
+      removeKeys?: string[],
+    ): void;
+
+    /**
+     * Mirrors a data layer object into volatile data, sending only the keys that changed or were removed
+     * since the previous sync for the same instance. On Android the changes are applied in one versioned
+     * update, and an update older than one already applied is ignored.
+     * @param data The whole data layer object
+     * @param instanceName Name of the Tealium instance; the default instance if omitted
+     * @returns false if nothing changed and no native call was made
+     */
+    static syncVolatileData(data: TealiumTypedData, instanceName?: string): boolean;
+
+    /**
+     * Compares two data layer objects, returning the keys whose values changed and the keys that were removed.
+     * @param previous The previously synced object
+     * @param next The current object
+     */
+    static diffVolatileData(
+      previous: TealiumTypedData,
+      next: TealiumTypedData,
+    ): { changes: TealiumTypedData; removals: string[] };
+
+    /**
+     * Gets all volatile data in a single call. Android only.
+     * @param callback A callback with a single parameter containing every key and value
+     */
+    static getAllVolatileData(callback: (values: TealiumTypedData) => {}): void;
+
+    /**
+     * Gets all volatile data in a single call. Android only.
+     * This method should be used if you have multiple instances of Tealium in your app.
+     * @param instanceName Name of the Tealium instance
+     * @param callback A callback with a single parameter containing every key and value
+     */
+    static getAllVolatileDataForInstanceName(
+      instanceName: string,
+      callback: (values: TealiumTypedData) => {},
     ): void;
 
     /**
      * Set persistent data to be sent with each subsequent event or view, even between app restarts,
      * where data is a JSON object of key-value pairs where keys are strings and the values are either a string or array of strings.
+     * On Android, numbers, booleans and nested objects are also kept natively, and null removes the key. Unless the mappedFile backend is
+     * used, objects and fractions a float can't hold exactly are sent to tags as strings, but getPersistentData still returns them as
+     * an object or a number; numbers may come back with float precision, and arrays always come back as unordered arrays of strings.
      * @param data JSON object of key value pairs
      */
-    static setPersistentData(data: TealiumData): void;
+    static setPersistentData(data: TealiumTypedData): void;
 
     /**
      * Set persistent data to be sent with each subsequent event or view, even between app restarts,
@@ -167,7 +459,91 @@ declare module 'tealium-react-native' {
      */
     static setPersistentDataForInstanceName(
       instanceName: string,
-      data: TealiumData,
+      data: TealiumTypedData,
+    ): void;
+
+    /**
+     * Gets the values for many keys in a single call. Android only.
+     * @param keys Array of key names
+     * @param callback A callback with a single parameter mapping each key to its value, or null if not set
+     */
+    static getPersistentDataMulti(
+      keys: string[],
+      callback: (values: TealiumTypedData) => {},
+    ): void;
+
+    /**
+     * Gets the values for many keys in a single call. Android only.
+     * This method should be used if you have multiple instances of Tealium in your app.
+     * @param instanceName Name of the Tealium instance
+     * @param keys Array of key names
+     * @param callback A callback with a single parameter mapping each key to its value, or null if not set
+     */
+    static getPersistentDataMultiForInstanceName(
+      instanceName: string,
+      keys: string[],
+      callback: (values: TealiumTypedData) => {},
+    ): void;
+
+    /**
+     * Writes all persistent data changes made so far to disk. Android only.
+     * With the mappedFile backend, changes survive the app being killed as soon as they are made, but only survive
+     * power loss or a system crash once committed, or once the app has gone to the background.
+     * @returns A promise resolving with whether the commit succeeded and how long it took in milliseconds; rejected on other platforms
+     */
+    static commitPersistentData(): Promise<{ committed: boolean; commitTime: number }>;
+
+    /**
+     * Writes all persistent data changes made so far to disk. Android only.
+     * This method should be used if you have multiple instances of Tealium in your app.
+     * @param instanceName Name of the Tealium instance
+     * @returns A promise resolving with whether the commit succeeded and how long it took in milliseconds; rejected on other platforms
+     */
+    static commitPersistentDataForInstanceName(
+      instanceName: string,
+    ): Promise<{ committed: boolean; commitTime: number }>;
+
+    /**
+     * Chooses where persistent data is stored. Android only.
+     * 'mappedFile' keeps keys in an append-only file that is attached to every track and view sent through
+     * this module; 'sharedPreferences' (default) uses the Tealium library's own storage.
+     * Keys in the mapped file are not added to events the Tealium library sends on its own, such as lifecycle
+     * launch, wake and sleep events, tracks made natively, or tracks triggered by remote commands. Keep keys those
+     * events need on 'sharedPreferences'.
+     * The choice is remembered across launches. With 'mappedFile', keys already in SharedPreferences stay
+     * readable and move to the file when next set.
+     * @param backend 'sharedPreferences' or 'mappedFile'
+     */
+    static setPersistentDataBackend(backend: PersistentDataBackend): void;
+
+    /**
+     * Chooses where persistent data is stored. Android only.
+     * This method should be used if you have multiple instances of Tealium in your app.
+     * @param instanceName Name of the Tealium instance
+     * @param backend 'sharedPreferences' or 'mappedFile'
+     */
+    static setPersistentDataBackendForInstanceName(
+      instanceName: string,
+      backend: PersistentDataBackend,
+    ): void;
+
+    /**
+     * Gets the persistent data backend in use with its key count and read timings in milliseconds. Android only.
+     * @param callback A callback with a single parameter containing the stats
+     */
+    static getPersistentDataStats(
+      callback: (stats: PersistentDataStats) => {},
+    ): void;
+
+    /**
+     * Gets the persistent data backend in use with its key count and read timings in milliseconds. Android only.
+     * This method should be used if you have multiple instances of Tealium in your app.
+     * @param instanceName Name of the Tealium instance
+     * @param callback A callback with a single parameter containing the stats
+     */
+    static getPersistentDataStatsForInstanceName(
+      instanceName: string,
+      callback: (stats: PersistentDataStats) => {},
     ): void;
 
     /**
@@ -342,15 +718,50 @@ declare module 'tealium-react-native' {
       callback: (enabled: boolean) => {},
     ): void;
 
+    /**
+     * Holds back track calls natively, before their data is converted, until the user has consented to every
+     * required category. While the user hasn't decided, calls are queued and sent once they consent, or discarded
+     * if they decline. Changes made natively, or by the consent manager itself when consent expires, are picked up
+     * too. Requires the consent manager. Android only.
+     * @param requiredCategories Consent categories a track call needs (default: none, so any consent opens the gate)
+     * @param undecidedPolicy Whether to queue or drop calls while the user hasn't decided (default: “queue”)
+     * @param capacity Maximum number of queued calls; the oldest is dropped when full (default: 100)
+     * @param instanceName Name of the Tealium instance; the default instance if omitted
+     */
+    static setConsentGate(
+      requiredCategories?: string[],
+      undecidedPolicy?: 'queue' | 'drop',
+      capacity?: number,
+      instanceName?: string,
+    ): void;
+
+    /**
+     * Stops holding back track calls for consent. Calls still queued are discarded. Android only.
+     * @param instanceName Name of the Tealium instance; the default instance if omitted
+     */
+    static removeConsentGate(instanceName?: string): void;
+
+    /**
+     * Gets the decision and counters of the consent gate. Android only.
+     * @param callback A callback with a single parameter containing the stats
+     * @param instanceName Name of the Tealium instance; the default instance if omitted
+     */
+    static getConsentGateStats(
+      callback: (stats: ConsentGateStats) => {},
+      instanceName?: string,
+    ): void;
+
     /**
      * Adds a remote command to the remote command manager. 
      * Don't forget to subscribe to the `RemoteCommandEvent` emitter.
      * @param commandID Name of the Remote Command (if using TiQ, this is whatever is in the tag config)
      * @param description A description of the remote command
+     * @param callback Called with each payload of the command
      */
     static addRemoteCommand(
       commandID: string,
       description: string,
+      callback?: (payload: { [key: string]: any }) => void,
     ): void;
 
     /**
@@ -360,11 +771,13 @@ declare module 'tealium-react-native' {
      * @param instanceName Name of the Tealium instance
      * @param commandID Name of the Remote Command (if using TiQ, this is whatever is in the tag config)
      * @param description A description of the remote command
+     * @param callback Called with each payload of the command
      */
     static addRemoteCommandForInstanceName(
       instanceName: string,
       commandID: string,
       description: string,
+      callback?: (payload: { [key: string]: any }) => void,
     ): void;
 
 
@@ -386,5 +799,102 @@ declare module 'tealium-react-native' {
       instanceName: string,
       commandID: string,
     ): void;
+
+    /**
+     * Adds many remote commands at once. On Android they are registered in a single native call.
+     * @param commands The commands to add, each with an id, an optional description and an optional callback
+     * @param instanceName Name of the Tealium instance; the default instance if omitted
+     */
+    static addRemoteCommands(
+      commands: {
+        id: string;
+        description?: string;
+        callback?: (payload: { [key: string]: any }) => void;
+      }[],
+      instanceName?: string,
+    ): void;
+
+    /**
+     * Removes many remote commands at once. On Android they are removed in a single native call.
+     * @param commandIDs Names of the Remote Commands
+     * @param instanceName Name of the Tealium instance; the default instance if omitted
+     */
+    static removeRemoteCommands(commandIDs: string[], instanceName?: string): void;
+
+    /**
+     * Gets the IDs of the remote commands added from JS to an instance, sorted. Android only.
+     * @param callback A callback with a single parameter containing the command IDs
+     * @param instanceName Name of the Tealium instance; the default instance if omitted
+     */
+    static getRemoteCommands(
+      callback: (commandIDs: string[]) => {},
+      instanceName?: string,
+    ): void;
+
+    /**
+     * Only sends payloads across the bridge for remote commands that were added with a callback. Android only.
+     * Payloads of other commands are dropped natively before they are converted.
+     * Leave this off if you listen to the `RemoteCommandEvent` emitter directly for commands added without a callback.
+     * @param enabled Whether to filter remote command payloads
+     */
+    static setRemoteCommandFiltering(enabled: boolean): void;
+
+    /**
+     * Makes a remote command wait for a response from JS. Android only.
+     * Its payloads then carry a `correlation_id`. The command is completed when its callback returns a value or a
+     * promise, or when `completeRemoteCommand` is called, and answered with status 408 after the timeout. The timeout
+     * starts when the command is invoked and starts over when the payload reaches JS, so a payload held waiting for
+     * JS to be ready still times out and is then never delivered. A payload dropped before it reaches JS is answered
+     * with status 503.
+     * @param commandID Name of the Remote Command
+     * @param timeoutMillis How long to wait for a response; 0 to stop waiting
+     */
+    static setRemoteCommandTimeout(commandID: string, timeoutMillis: number): void;
+
+    /**
+     * Sends the response for a remote command invocation that is waiting for one. Android only.
+     * @param correlationID The `correlation_id` of the payload
+     * @param status Response status code (default: 200)
+     * @param body Response body; objects are sent as JSON
+     */
+    static completeRemoteCommand(correlationID: string, status?: number, body?: any): void;
+
+    /**
+     * Sets how many remote command invocations may wait for a response at once (default: 256). Android only.
+     * Invocations beyond that are answered straight away with status 503.
+     * @param capacity Maximum number of waiting invocations
+     */
+    static setRemoteCommandResponseCapacity(capacity: number): void;
+
+    /**
+     * Gets counts and round-trip times in milliseconds for remote commands that wait for a response. Android only.
+     * @param callback A callback with a single parameter containing the metrics
+     */
+    static getRemoteCommandMetrics(
+      callback: (metrics: RemoteCommandMetrics) => {},
+    ): void;
+
+    /**
+     * Configures the native queue that holds remote command payloads until JS has attached its listener,
+     * and while the React instance is reloading. Held payloads are delivered in order. Android only.
+     * @param capacity Maximum number of held payloads (default: 256)
+     * @param overflowPolicy Which payload is dropped when the queue is full (default: “dropOldest”)
+     */
+    static configureRemoteCommandQueue(
+      capacity: number,
+      overflowPolicy?: 'dropOldest' | 'dropNewest',
+    ): void;
+
+    /**
+     * Delivers a remote command's payloads in batches instead of one event per invocation. Android only.
+     * Batched payloads arrive as one `RemoteCommandBatchEvent` array, in invocation order, and are passed to the
+     * command's callback one by one. Each command is batched on its own window.
+     * @param commandID Name of the Remote Command
+     * @param mode 'frame' to deliver once per frame, a window in milliseconds, or 'off' to deliver each payload at once
+     */
+    static setRemoteCommandBatching(
+      commandID: string,
+      mode: 'frame' | 'off' | number,
+    ): void;
   }
 }
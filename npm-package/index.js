@@ -1,10 +1,15 @@
-import { NativeEventEmitter, NativeModules } from 'react-native';
+import { AppState, NativeEventEmitter, NativeModules } from 'react-native';
 const { TealiumModule } = NativeModules;
 
 export default class Tealium {
 
     static remoteCommandEmitter = new NativeEventEmitter(TealiumModule);
     static remoteCommandCallbacks = {};
+    static remoteCommandInstances = {};
+    static trackBatch = null;
+    static trackBatchAppStateListener = false;
+    static volatileDataSyncState = {};
+    static remoteCommandBatchListener = null;
 
     static initialize(
         account,
@@ -15,6 +20,7 @@ export default class Tealium {
         instanceName = 'MAIN',
         isLifecycleEnabled = true,
     ) {
+        this.flushTrackBatch();
         TealiumModule.initialize(
             account,
             profile,
@@ -36,6 +42,7 @@ export default class Tealium {
         instanceName = 'MAIN',
         isLifecycleEnabled = true,
     ) {
+        this.flushTrackBatch();
         TealiumModule.initializeWithConsentManager(
             account,
             profile,
@@ -61,6 +68,7 @@ export default class Tealium {
         collectURL,
         enableConsentManager
     ) {
+        this.flushTrackBatch();
         TealiumModule.initializeCustom(
             account,
             profile,
@@ -77,115 +85,551 @@ export default class Tealium {
         this.addRemoteCommandListener('RemoteCommandEvent');
     }
 
+    // Same options as initializeCustom, but the native instance is created off the main and bridge
+    // threads. Track, data, consent and remote command calls made before the promise resolves are
+    // queued natively.
+    static initializeAsync(
+        account,
+        profile,
+        environment,
+        iosDatasource,
+        androidDatasource,
+        instanceName = 'MAIN',
+        isLifecycleEnabled = true,
+        overridePublishSettingsURL = null,
+        overrideTagManagementURL = null,
+        collectURL = true,
+        enableConsentManager = false
+    ) {
+        this.flushTrackBatch();
+        this.addRemoteCommandListener('RemoteCommandEvent');
+        if (!TealiumModule.initializeAsync) {
+            TealiumModule.initializeCustom(
+                account,
+                profile,
+                environment,
+                iosDatasource,
+                androidDatasource,
+                instanceName,
+                isLifecycleEnabled,
+                overridePublishSettingsURL,
+                overrideTagManagementURL,
+                collectURL,
+                enableConsentManager
+            );
+            return Promise.resolve({ instanceName: instanceName });
+        }
+        return TealiumModule.initializeAsync(
+            account,
+            profile,
+            environment,
+            iosDatasource,
+            androidDatasource,
+            instanceName,
+            isLifecycleEnabled,
+            overridePublishSettingsURL,
+            overrideTagManagementURL,
+            collectURL,
+            enableConsentManager
+        );
+    }
+
     static trackEvent(stringTitle, data) {
+        if (this.enqueueTrack(null, 'event', stringTitle, data)) {
+            return;
+        }
         TealiumModule.trackEvent(stringTitle, data);
     }
 
     static trackView(stringTitle, data) {
+        if (this.enqueueTrack(null, 'view', stringTitle, data)) {
+            return;
+        }
         TealiumModule.trackView(stringTitle, data);
     }
 
     static trackViewForInstanceName(name, stringTitle, data) {
+        if (this.enqueueTrack(name, 'view', stringTitle, data)) {
+            return;
+        }
         TealiumModule.trackViewForInstance(name, stringTitle, data);
     }
 
     static trackEventForInstanceName(name, stringTitle, data) {
+        if (this.enqueueTrack(name, 'event', stringTitle, data)) {
+            return;
+        }
         TealiumModule.trackEventForInstance(name, stringTitle, data);
     }
 
-    static setVolatileData(data) {
-        TealiumModule.setVolatileData(data);
+    // Sizes the native tracking queue and sets what happens to track calls when it is full:
+    // 'dropOldest', 'dropNewest' or 'block' (Android only). Data calls are never dropped.
+    static configureTrackingQueue(capacity, overflowPolicy = 'dropOldest') {
+        this.flushTrackBatch();
+        if (TealiumModule.configureTrackingQueue) {
+            TealiumModule.configureTrackingQueue(capacity, overflowPolicy);
+        }
+    }
+
+    // Reports how many calls were buffered, replayed and dropped while the instance was
+    // still initializing (Android only).
+    static getPendingCallStats(name, callback) {
+        this.flushTrackBatch();
+        if (TealiumModule.getPendingCallStats) {
+            TealiumModule.getPendingCallStats(name, callback);
+        }
+    }
+
+    // Sets the longest the autotracked launch event waits for a new instance to report ready once the
+    // app is in the foreground and the instance is created. Call before initializing (Android only).
+    static setLaunchTimeout(timeoutMillis) {
+        this.flushTrackBatch();
+        if (TealiumModule.setLaunchTimeout) {
+            TealiumModule.setLaunchTimeout(timeoutMillis);
+        }
+    }
+
+    // Limits the nesting depth and total number of values converted per event payload (Android only).
+    static setPayloadLimits(maxDepth, maxEntries) {
+        this.flushTrackBatch();
+        if (TealiumModule.setPayloadLimits) {
+            TealiumModule.setPayloadLimits(maxDepth, maxEntries);
+        }
+    }
+
+    // Limits the nesting depth and total number of values converted per payload sent to JS,
+    // such as remote command payloads (Android only).
+    static setNativePayloadLimits(maxDepth, maxEntries) {
+        this.flushTrackBatch();
+        if (TealiumModule.setNativePayloadLimits) {
+            TealiumModule.setNativePayloadLimits(maxDepth, maxEntries);
+        }
+    }
+
+    // Batches track calls and sends them in one bridge call per frame, or as soon as
+    // maxBatchSize calls are pending. Only available where the native module supports it.
+    // Pending calls are also sent before any other native call, so they keep their order, and when
+    // the app goes to the background, where frames stop and the process may be killed.
+    static enableTrackBatching(maxBatchSize = 20) {
+        if (!TealiumModule.trackEventsBatch) {
+            return false;
+        }
+        this.flushTrackBatch();
+        this.trackBatch = { maxBatchSize: maxBatchSize, entries: [], scheduled: false };
+        if (!this.trackBatchAppStateListener) {
+            this.trackBatchAppStateListener = true;
+            AppState.addEventListener('change', (state) => {
+                if (state === 'background') {
+                    this.flushTrackBatch();
+                }
+            });
+        }
+        return true;
+    }
+
+    static disableTrackBatching() {
+        this.flushTrackBatch();
+        this.trackBatch = null;
+    }
+
+    static enqueueTrack(name, type, stringTitle, data) {
+        var batch = this.trackBatch;
+        if (!batch) {
+            return false;
+        }
+        batch.entries.push({ instanceName: name, entry: { type: type, name: stringTitle, data: data } });
+        if (batch.entries.length >= batch.maxBatchSize) {
+            this.flushTrackBatch();
+        } else if (!batch.scheduled) {
+            batch.scheduled = true;
+            requestAnimationFrame(() => this.flushTrackBatch());
+        }
+        return true;
+    }
+
+    static flushTrackBatch() {
+        var batch = this.trackBatch;
+        if (!batch || batch.entries.length == 0) {
+            return;
+        }
+        var pending = batch.entries;
+        batch.entries = [];
+        batch.scheduled = false;
+
+        // consecutive entries for the same instance share a bridge call, keeping overall order
+        var start = 0;
+        for (var i = 1; i <= pending.length; i++) {
+            if (i == pending.length || pending[i].instanceName !== pending[start].instanceName) {
+                TealiumModule.trackEventsBatch(
+                    pending[start].instanceName,
+                    pending.slice(start, i).map((pendingTrack) => pendingTrack.entry),
+                );
+                start = i;
+            }
+        }
+    }
+
+    // Resolves with the integer handle of an initialized instance. Handles skip the instance name
+    // lookup on every call and stop working once the instance is destroyed (Android only).
+    static getInstanceHandle(name) {
+        this.flushTrackBatch();
+        if (!TealiumModule.getInstanceHandle) {
+            return this.rejectUnsupported('getInstanceHandle');
+        }
+        return TealiumModule.getInstanceHandle(name);
+    }
+
+    static destroyInstance(name) {
+        this.flushTrackBatch();
+        if (TealiumModule.destroyInstance) {
+            TealiumModule.destroyInstance(name);
+        }
+    }
+
+    static trackEventForHandle(handle, stringTitle, data) {
+        this.flushTrackBatch();
+        if (TealiumModule.trackEventForHandle) {
+            TealiumModule.trackEventForHandle(handle, stringTitle, data);
+        }
+    }
+
+    static trackViewForHandle(handle, stringTitle, data) {
+        this.flushTrackBatch();
+        if (TealiumModule.trackViewForHandle) {
+            TealiumModule.trackViewForHandle(handle, stringTitle, data);
+        }
+    }
+
+    static setVolatileDataForHandle(handle, data) {
+        this.flushTrackBatch();
+        if (TealiumModule.setVolatileDataForHandle) {
+            TealiumModule.setVolatileDataForHandle(handle, data);
+        }
+    }
+
+    static setPersistentDataForHandle(handle, data) {
+        this.flushTrackBatch();
+        if (TealiumModule.setPersistentDataForHandle) {
+            TealiumModule.setPersistentDataForHandle(handle, data);
+        }
+    }
+
+    static removeVolatileDataForHandle(handle, keys) {
+        this.flushTrackBatch();
+        if (TealiumModule.removeVolatileDataForHandle) {
+            TealiumModule.removeVolatileDataForHandle(handle, keys);
+        }
+    }
+
+    static removePersistentDataForHandle(handle, keys) {
+        this.flushTrackBatch();
+        if (TealiumModule.removePersistentDataForHandle) {
+            TealiumModule.removePersistentDataForHandle(handle, keys);
+        }
+    }
+
+    // expiry is optional: { ttl: ms, events: n, nextView: true } removes the keys natively (Android only).
+    static setVolatileData(data, expiry) {
+        this.flushTrackBatch();
+        if (expiry && TealiumModule.setVolatileDataWithExpiry) {
+            TealiumModule.setVolatileDataWithExpiry(data, expiry);
+        } else {
+            TealiumModule.setVolatileData(data);
+        }
     }
 
     static getVolatileData(key, value) {
+        this.flushTrackBatch();
         TealiumModule.getVolatileData(key, value);
     }
 
     static getVolatileDataForInstanceName(name, key, data) {
+        this.flushTrackBatch();
         TealiumModule.getVolatileDataForInstance(name, key, data);
     }
 
-    static setVolatileDataForInstanceName(name, data) {
-        TealiumModule.setVolatileDataForInstance(name, data);
+    static setVolatileDataForInstanceName(name, data, expiry) {
+        this.flushTrackBatch();
+        if (expiry && TealiumModule.setVolatileDataWithExpiryForInstance) {
+            TealiumModule.setVolatileDataWithExpiryForInstance(name, data, expiry);
+        } else {
+            TealiumModule.setVolatileDataForInstance(name, data);
+        }
+    }
+
+    // Mirrors a JS data layer object into volatile data, sending only the keys that changed since the
+    // previous sync for the same instance. Returns false when nothing changed and no call was made.
+    static syncVolatileData(data, instanceName = null) {
+        var stateKey = instanceName || '';
+        var state = this.volatileDataSyncState[stateKey];
+        if (!state) {
+            // versions only need to increase; starting from the clock keeps them increasing across JS reloads
+            state = { version: Date.now() * 1000, data: {} };
+            this.volatileDataSyncState[stateKey] = state;
+        }
+
+        var diff = this.diffVolatileData(state.data, data);
+        if (Object.keys(diff.changes).length == 0 && diff.removals.length == 0) {
+            return false;
+        }
+        Object.keys(diff.changes).forEach((key) => {
+            state.data[key] = this.cloneDataValue(diff.changes[key]);
+        });
+        diff.removals.forEach((key) => {
+            delete state.data[key];
+        });
+
+        this.flushTrackBatch();
+        if (TealiumModule.syncVolatileData) {
+            state.version += 1;
+            TealiumModule.syncVolatileData(instanceName, state.version, diff.changes, diff.removals);
+        } else if (instanceName) {
+            TealiumModule.setVolatileDataForInstance(instanceName, diff.changes);
+            TealiumModule.removeVolatileDataForInstance(instanceName, diff.removals);
+        } else {
+            TealiumModule.setVolatileData(diff.changes);
+            TealiumModule.removeVolatileData(diff.removals);
+        }
+        return true;
+    }
+
+    // Keys of next whose value differs from previous, and keys of previous that next no longer has.
+    static diffVolatileData(previous, next) {
+        var changes = {};
+        var removals = [];
+        Object.keys(next).forEach((key) => {
+            if (next[key] !== undefined && !this.dataValuesEqual(previous[key], next[key])) {
+                changes[key] = next[key];
+            }
+        });
+        Object.keys(previous).forEach((key) => {
+            if (next[key] === undefined) {
+                removals.push(key);
+            }
+        });
+        return { changes: changes, removals: removals };
+    }
+
+    static dataValuesEqual(a, b) {
+        if (a === b) {
+            return true;
+        }
+        if (a === null || b === null || typeof a !== 'object' || typeof b !== 'object'
+            || Array.isArray(a) !== Array.isArray(b)) {
+            return false;
+        }
+        var keys = Object.keys(a);
+        if (keys.length != Object.keys(b).length) {
+            return false;
+        }
+        return keys.every((key) => this.dataValuesEqual(a[key], b[key]));
+    }
+
+    // The last synced state must not share objects the app may mutate in place.
+    static cloneDataValue(value) {
+        return value !== null && typeof value === 'object' ? JSON.parse(JSON.stringify(value)) : value;
+    }
+
+    // Sets and removes volatile keys as one all-or-nothing update (Android only; elsewhere the keys
+    // are set and then removed in two calls).
+    static updateVolatileData(data, removeKeys = []) {
+        this.flushTrackBatch();
+        if (TealiumModule.updateVolatileData) {
+            TealiumModule.updateVolatileData(data, removeKeys);
+        } else {
+            TealiumModule.setVolatileData(data);
+            TealiumModule.removeVolatileData(removeKeys);
+        }
+    }
+
+    static updateVolatileDataForInstanceName(name, data, removeKeys = []) {
+        this.flushTrackBatch();
+        if (TealiumModule.updateVolatileDataForInstance) {
+            TealiumModule.updateVolatileDataForInstance(name, data, removeKeys);
+        } else {
+            TealiumModule.setVolatileDataForInstance(name, data);
+            TealiumModule.removeVolatileDataForInstance(name, removeKeys);
+        }
+    }
+
+    // The callback receives every volatile key and value in one object (Android only).
+    static getAllVolatileData(callback) {
+        this.flushTrackBatch();
+        if (TealiumModule.getAllVolatileData) {
+            TealiumModule.getAllVolatileData(callback);
+        }
+    }
+
+    static getAllVolatileDataForInstanceName(name, callback) {
+        this.flushTrackBatch();
+        if (TealiumModule.getAllVolatileDataForInstance) {
+            TealiumModule.getAllVolatileDataForInstance(name, callback);
+        }
     }
 
     static setPersistentData(data) {
+        this.flushTrackBatch();
         TealiumModule.setPersistentData(data);
     }
 
     static setPersistentDataForInstanceName(name, data) {
+        this.flushTrackBatch();
         TealiumModule.setPersistentDataForInstance(name, data);
     }
 
+    // Reads many persistent keys in one bridge call; the callback receives an object of key -> value (Android only).
+    static getPersistentDataMulti(keys, callback) {
+        this.flushTrackBatch();
+        if (TealiumModule.getPersistentDataMulti) {
+            TealiumModule.getPersistentDataMulti(keys, callback);
+        }
+    }
+
+    static getPersistentDataMultiForInstanceName(name, keys, callback) {
+        this.flushTrackBatch();
+        if (TealiumModule.getPersistentDataMultiForInstance) {
+            TealiumModule.getPersistentDataMultiForInstance(name, keys, callback);
+        }
+    }
+
+    // Resolves once all persistent data changes made so far are written to disk (Android only).
+    static commitPersistentData() {
+        if (!TealiumModule.commitPersistentData) {
+            return this.rejectUnsupported('commitPersistentData');
+        }
+        this.flushTrackBatch();
+        return TealiumModule.commitPersistentData();
+    }
+
+    static commitPersistentDataForInstanceName(name) {
+        if (!TealiumModule.commitPersistentDataForInstance) {
+            return this.rejectUnsupported('commitPersistentDataForInstanceName');
+        }
+        this.flushTrackBatch();
+        return TealiumModule.commitPersistentDataForInstance(name);
+    }
+
+    // Promise-returning wrappers of native methods this platform's module doesn't have reject with this.
+    static rejectUnsupported(methodName) {
+        return Promise.reject(new Error(methodName + ' is not supported by the native module on this platform'));
+    }
+
+    // Chooses where persistent data is stored: 'sharedPreferences' (default) or 'mappedFile' (Android only).
+    static setPersistentDataBackend(backend) {
+        this.flushTrackBatch();
+        if (TealiumModule.setPersistentDataBackend) {
+            TealiumModule.setPersistentDataBackend(backend);
+        }
+    }
+
+    static setPersistentDataBackendForInstanceName(name, backend) {
+        this.flushTrackBatch();
+        if (TealiumModule.setPersistentDataBackendForInstance) {
+            TealiumModule.setPersistentDataBackendForInstance(name, backend);
+        }
+    }
+
+    static getPersistentDataStats(callback) {
+        this.flushTrackBatch();
+        if (TealiumModule.getPersistentDataStats) {
+            TealiumModule.getPersistentDataStats(callback);
+        }
+    }
+
+    static getPersistentDataStatsForInstanceName(name, callback) {
+        this.flushTrackBatch();
+        if (TealiumModule.getPersistentDataStatsForInstance) {
+            TealiumModule.getPersistentDataStatsForInstance(name, callback);
+        }
+    }
+
     static getPersistentData(key, value) {
+        this.flushTrackBatch();
         TealiumModule.getPersistentData(key, value);
     }
 
     static getPersistentDataForInstanceName(name, key, data) {
+        this.flushTrackBatch();
         TealiumModule.getPersistentDataForInstance(name, key, data);
     }
 
     static removeVolatileData(keys) {
+        this.flushTrackBatch();
         TealiumModule.removeVolatileData(keys);
     }
 
     static removeVolatileDataForInstanceName(name, keys) {
+        this.flushTrackBatch();
         TealiumModule.removeVolatileDataForInstance(name, keys);
     }
 
     static removePersistentData(keys) {
+        this.flushTrackBatch();
         TealiumModule.removePersistentData(keys);
     }
 
     static removePersistentDataForInstanceName(name, keys) {
+        this.flushTrackBatch();
         TealiumModule.removePersistentDataForInstance(name, keys);
     }
 
     static getVisitorID(visitorID) {
+        this.flushTrackBatch();
         TealiumModule.getVisitorID(visitorID);
     }
 
     static getVisitorIDForInstanceName(name, visitorID) {
+        this.flushTrackBatch();
         TealiumModule.getVisitorIDForInstance(name, visitorID);
     }
 
     static getUserConsentStatus(userConsentStatus) {
+        this.flushTrackBatch();
         TealiumModule.getUserConsentStatus(userConsentStatus);
     }
 
     static getUserConsentStatusForInstanceName(name, userConsentStatus) {
+        this.flushTrackBatch();
         TealiumModule.getUserConsentStatusForInstance(name, userConsentStatus);
     }
 
     static setUserConsentStatus(userConsentStatus) {
+        this.flushTrackBatch();
         TealiumModule.setUserConsentStatus(userConsentStatus);
     }
 
     static setUserConsentStatusForInstanceName(name, userConsentStatus) {
+        this.flushTrackBatch();
         TealiumModule.setUserConsentStatusForInstance(name, userConsentStatus);
     }
 
     static getUserConsentCategories(userConsentCategories) {
+        this.flushTrackBatch();
         TealiumModule.getUserConsentCategories(userConsentCategories);
     }
 
     static getUserConsentCategoriesForInstanceName(name, userConsentCategories) {
+        this.flushTrackBatch();
         TealiumModule.getUserConsentCategoriesForInstance(name, userConsentCategories);
     }
 
     static setUserConsentCategories(userConsentCategories) {
+        this.flushTrackBatch();
         TealiumModule.setUserConsentCategories(userConsentCategories);
     }
 
     static setUserConsentCategoriesForInstanceName(name, userConsentCategories) {
+        this.flushTrackBatch();
         TealiumModule.setUserConsentCategoriesForInstance(name, userConsentCategories);
     }
 
     static resetUserConsentPreferences() {
+        this.flushTrackBatch();
         TealiumModule.resetUserConsentPreferences();
     }
 
     static resetUserConsentPreferencesForInstanceName(name) {
+        this.flushTrackBatch();
         TealiumModule.resetUserConsentPreferencesForInstance(name);
     }
 
@@ -195,54 +639,233 @@ export default class Tealium {
     // }
 
     static setConsentLoggingEnabled(enabled) {
+        this.flushTrackBatch();
         TealiumModule.setConsentLoggingEnabled(enabled);
     }
 
     static setConsentLoggingEnabledForInstanceName(name, enabled) {
+        this.flushTrackBatch();
         TealiumModule.setConsentLoggingEnabledForInstance(name, enabled);
     }
 
     static isConsentLoggingEnabled(enabled) {
+        this.flushTrackBatch();
         TealiumModule.isConsentLoggingEnabled(enabled);
     }
 
     static isConsentLoggingEnabledForInstanceName(name, enabled) {
+        this.flushTrackBatch();
         TealiumModule.isConsentLoggingEnabledForInstanceName(name, enabled);
     }
 
+    // Holds track calls natively until the user consents to every required category. Undecided
+    // calls are queued up to capacity ('queue') or dropped ('drop') (Android only).
+    static setConsentGate(requiredCategories = [], undecidedPolicy = 'queue', capacity = 100, instanceName = null) {
+        this.flushTrackBatch();
+        if (TealiumModule.setConsentGate) {
+            TealiumModule.setConsentGate(instanceName, requiredCategories, undecidedPolicy, capacity);
+        }
+    }
+
+    static removeConsentGate(instanceName = null) {
+        this.flushTrackBatch();
+        if (TealiumModule.removeConsentGate) {
+            TealiumModule.removeConsentGate(instanceName);
+        }
+    }
+
+    static getConsentGateStats(callback, instanceName = null) {
+        this.flushTrackBatch();
+        if (TealiumModule.getConsentGateStats) {
+            TealiumModule.getConsentGateStats(instanceName, callback);
+        }
+    }
+
     static addRemoteCommand(commandID, description, callback) {
+        this.flushTrackBatch();
         TealiumModule.addRemoteCommand(commandID, description);
-        this.remoteCommandCallbacks[commandID] = callback;
+        this.retainRemoteCommand(commandID, null, callback, true);
     }
 
     static addRemoteCommandForInstanceName(name, commandID, description, callback) {
+        this.flushTrackBatch();
         TealiumModule.addRemoteCommandForInstanceName(name, commandID, description);
-        if (this.remoteCommandCallbacks[commandID] == undefined) {
-            this.remoteCommandCallbacks[commandID] = callback;
-        }
+        this.retainRemoteCommand(commandID, name, callback, false);
     }
 
     static removeRemoteCommand(commandID) {
+        this.flushTrackBatch();
         TealiumModule.removeRemoteCommand(commandID);
-        delete this.remoteCommandCallbacks[commandID];
+        this.releaseRemoteCommand(commandID, null);
     }
 
     static removeRemoteCommandForInstanceName(name, commandID) {
+        this.flushTrackBatch();
         TealiumModule.removeRemoteCommandForInstanceName(name, commandID);
-        delete this.remoteCommandCallbacks[commandID];
+        this.releaseRemoteCommand(commandID, name);
+    }
+
+    // Callbacks are shared by every instance that adds the same command ID, so each instance adding
+    // it is recorded and the callback is only forgotten once no instance has the command left.
+    static retainRemoteCommand(commandID, instanceName, callback, replace) {
+        var instances = this.remoteCommandInstances[commandID] || (this.remoteCommandInstances[commandID] = {});
+        instances[instanceName || ''] = true;
+        if (replace || this.remoteCommandCallbacks[commandID] == undefined) {
+            this.remoteCommandCallbacks[commandID] = callback;
+        }
+        this.updateRemoteCommandSubscription(commandID);
+    }
+
+    static releaseRemoteCommand(commandID, instanceName) {
+        var instances = this.remoteCommandInstances[commandID];
+        if (instances) {
+            delete instances[instanceName || ''];
+        }
+        if (!instances || Object.keys(instances).length === 0) {
+            delete this.remoteCommandInstances[commandID];
+            delete this.remoteCommandCallbacks[commandID];
+        }
+        this.updateRemoteCommandSubscription(commandID);
+    }
+
+    // Adds many commands, each { id, description, callback }, in one native call where supported.
+    static addRemoteCommands(commands, instanceName = null) {
+        this.flushTrackBatch();
+        if (!TealiumModule.addRemoteCommands) {
+            commands.forEach((command) => instanceName
+                ? this.addRemoteCommandForInstanceName(instanceName, command.id, command.description, command.callback)
+                : this.addRemoteCommand(command.id, command.description, command.callback));
+            return;
+        }
+        TealiumModule.addRemoteCommands(instanceName,
+            commands.map((command) => ({ id: command.id, description: command.description || '' })));
+        commands.forEach((command) => this.retainRemoteCommand(command.id, instanceName, command.callback, !instanceName));
+    }
+
+    static removeRemoteCommands(commandIDs, instanceName = null) {
+        this.flushTrackBatch();
+        if (!TealiumModule.removeRemoteCommands) {
+            commandIDs.forEach((commandID) => instanceName
+                ? this.removeRemoteCommandForInstanceName(instanceName, commandID)
+                : this.removeRemoteCommand(commandID));
+            return;
+        }
+        TealiumModule.removeRemoteCommands(instanceName, commandIDs);
+        commandIDs.forEach((commandID) => this.releaseRemoteCommand(commandID, instanceName));
+    }
+
+    // Lists the IDs of the commands added from JS to the instance (Android only).
+    static getRemoteCommands(callback, instanceName = null) {
+        this.flushTrackBatch();
+        if (TealiumModule.getRemoteCommands) {
+            TealiumModule.getRemoteCommands(instanceName, callback);
+        }
+    }
+
+    // Tells native whether a callback is waiting for the command, so unobserved payloads can be
+    // dropped before they cross the bridge once filtering is enabled.
+    static updateRemoteCommandSubscription(commandID) {
+        if (TealiumModule.setRemoteCommandSubscribed) {
+            TealiumModule.setRemoteCommandSubscribed(commandID, !!this.remoteCommandCallbacks[commandID]);
+        }
+    }
+
+    // Only emit payloads of commands added with a callback (Android only). Leave off when listening
+    // to the RemoteCommandEvent emitter directly for commands added without one.
+    static setRemoteCommandFiltering(enabled) {
+        this.flushTrackBatch();
+        if (TealiumModule.setRemoteCommandFiltering) {
+            TealiumModule.setRemoteCommandFiltering(enabled);
+        }
+    }
+
+    // Holds a command's payloads natively and delivers them in one event per frame ('frame') or per
+    // window of milliseconds; 'off' delivers each payload as it arrives (Android only).
+    static setRemoteCommandBatching(commandID, mode) {
+        this.flushTrackBatch();
+        if (!TealiumModule.setRemoteCommandBatching) {
+            return;
+        }
+        var windowMillis = mode === 'frame' ? 0 : typeof mode === 'number' && mode >= 0 ? mode : -1;
+        TealiumModule.setRemoteCommandBatching(commandID, windowMillis);
     }
 
     static addRemoteCommandListener(eventName) {
         this.remoteCommandEmitter.addListener(eventName,
             (payload) => {
-                var commandID = payload["command_id"];
-                if (commandID) {
-                    var callback = this.remoteCommandCallbacks[commandID]
-                    if (callback) {
-                        callback(payload);
-                    }
-                }
+                this.dispatchRemoteCommand(payload);
             }
         )
-    }       
+        if (!this.remoteCommandBatchListener) {
+            this.remoteCommandBatchListener = this.remoteCommandEmitter.addListener('RemoteCommandBatchEvent',
+                (payloads) => {
+                    payloads.forEach((payload) => this.dispatchRemoteCommand(payload));
+                }
+            )
+        }
+        // payloads that arrived before the listener was attached are held natively until now (Android only)
+        if (TealiumModule.remoteCommandListenerAttached) {
+            TealiumModule.remoteCommandListenerAttached();
+        }
+    }
+
+    static dispatchRemoteCommand(payload) {
+        var commandID = payload["command_id"];
+        if (commandID) {
+            var callback = this.remoteCommandCallbacks[commandID]
+            if (callback) {
+                var result = callback(payload);
+                // commands waiting for a response are completed with whatever the callback returns or resolves
+                var correlationID = payload["correlation_id"];
+                if (correlationID && result !== undefined) {
+                    Promise.resolve(result).then(
+                        (body) => this.completeRemoteCommand(correlationID, 200, body),
+                        (error) => this.completeRemoteCommand(correlationID, 500, error && error.message),
+                    );
+                }
+            }
+        }
+    }
+
+    // Makes the command wait up to timeoutMillis for a response; its payloads then carry a
+    // correlation_id to pass to completeRemoteCommand. 0 stops waiting (Android only).
+    static setRemoteCommandTimeout(commandID, timeoutMillis) {
+        this.flushTrackBatch();
+        if (TealiumModule.setRemoteCommandTimeout) {
+            TealiumModule.setRemoteCommandTimeout(commandID, timeoutMillis);
+        }
+    }
+
+    static completeRemoteCommand(correlationID, status = 200, body = '') {
+        this.flushTrackBatch();
+        if (!TealiumModule.completeRemoteCommand) {
+            return;
+        }
+        var responseBody = typeof body === 'string' ? body : body == null ? '' : JSON.stringify(body);
+        TealiumModule.completeRemoteCommand(correlationID, status, responseBody);
+    }
+
+    // Most invocations that may wait for a response at once; more are answered with status 503 (Android only).
+    static setRemoteCommandResponseCapacity(capacity) {
+        this.flushTrackBatch();
+        if (TealiumModule.setRemoteCommandResponseCapacity) {
+            TealiumModule.setRemoteCommandResponseCapacity(capacity);
+        }
+    }
+
+    // Sizes the native queue that holds remote command payloads while JS is not ready to receive
+    // them, and sets which payload is dropped when it is full: 'dropOldest' or 'dropNewest' (Android only).
+    static configureRemoteCommandQueue(capacity, overflowPolicy = 'dropOldest') {
+        this.flushTrackBatch();
+        if (TealiumModule.configureRemoteCommandQueue) {
+            TealiumModule.configureRemoteCommandQueue(capacity, overflowPolicy);
+        }
+    }
+
+    static getRemoteCommandMetrics(callback) {
+        this.flushTrackBatch();
+        if (TealiumModule.getRemoteCommandMetrics) {
+            TealiumModule.getRemoteCommandMetrics(callback);
+        }
+    }
 }
\ No newline at end of file